@@ -0,0 +1,131 @@
+/**
+ * Class Change - one step the player took that can be undone.
+ *
+ * A change only records what is needed to reverse it: which room was left,
+ * which item moved and where it was, and what using an item did. Every
+ * step of history therefore costs the same small, fixed amount of memory
+ * no matter how big the house is.
+ *
+ * @author  Gunamay Sachdev
+ * @version 2020.11.24
+ */
+public class Change
+{
+    // The kinds of change that can be undone.
+    public static final int MOVE = 0;
+    public static final int TAKE = 1;
+    public static final int DROP = 2;
+    public static final int USE = 3;
+
+    // Rough size of one change in bytes: the object itself plus its slot in the history.
+    public static final int BYTES = 48;
+
+    // The kind of change.
+    private int kind;
+    // The room the player left, or the room the item was taken from or dropped into.
+    private Room room;
+    // The player's last room before a move.
+    private Room lastRoom;
+    // The item that was taken, dropped or used.
+    private Item item;
+    // How many of the item were taken or dropped.
+    private int count;
+    // What using the item did, or null.
+    private ItemEffect effect;
+
+    /**
+     * Create a change.
+     * @param kind The kind of change, for example MOVE.
+     * @param room The room the change happened in.
+     * @param lastRoom The player's last room before a move, otherwise null.
+     * @param item The item involved, or null for a move.
+     */
+    public Change(int kind, Room room, Room lastRoom, Item item)
+    {
+        this(kind, room, lastRoom, item, 1);
+    }
+
+    /**
+     * Create a change that involves a number of the same item.
+     * @param kind The kind of change, for example TAKE.
+     * @param room The room the change happened in.
+     * @param lastRoom The player's last room before a move, otherwise null.
+     * @param item The item involved, or null for a move.
+     * @param count How many of the item were involved.
+     */
+    public Change(int kind, Room room, Room lastRoom, Item item, int count)
+    {
+        this.kind = kind;
+        this.room = room;
+        this.lastRoom = lastRoom;
+        this.item = item;
+        this.count = count;
+    }
+
+    /**
+     * Create a change for an item that was used.
+     * @param room The room the item was taken from, or null if it came from the inventory.
+     * @param item The item used.
+     * @param effect What using the item did.
+     */
+    public Change(Room room, Item item, ItemEffect effect)
+    {
+        this(USE, room, null, item, 1);
+        this.effect = effect;
+    }
+
+    /**
+     * Return the kind of change.
+     * @return The kind, for example MOVE.
+     */
+    public int getKind()
+    {
+        return kind;
+    }
+
+    /**
+     * Return the room the change happened in. For a move this is the
+     * room the player left, or null if a used item came from the inventory.
+     * @return The room.
+     */
+    public Room getRoom()
+    {
+        return room;
+    }
+
+    /**
+     * Return the player's last room before a move.
+     * @return The last room.
+     */
+    public Room getLastRoom()
+    {
+        return lastRoom;
+    }
+
+    /**
+     * Return the item that was taken, dropped or used.
+     * @return The item.
+     */
+    public Item getItem()
+    {
+        return item;
+    }
+
+    /**
+     * Return how many of the item were taken or dropped.
+     * @return The number of items.
+     */
+    public int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Return what using the item did.
+     * @return The effect, or null if no item was used.
+     */
+    public ItemEffect getEffect()
+    {
+        return effect;
+    }
+}
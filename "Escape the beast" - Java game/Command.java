@@ -12,6 +12,12 @@
  * known) then the command word is <null>.
  *
  * If the command had only one word, then the second word is <null>.
+ *
+ * A command can also say how many of something it is about, for example
+ * "take 3 bread". The quantity is 1 unless a number was given.
+ *
+ * A command can also say where it happens, for example "drop key in the
+ * kitchen" has the place "kitchen". The place is null if none was given.
  * 
  * @author  Gunamay Sachdev
  * @version 2020.11.24
@@ -21,6 +27,8 @@ public class Command
 {
     private String commandWord;
     private String secondWord;
+    private int quantity;
+    private String place;
 
     /**
      * Create a command object. First and second word must be supplied, but
@@ -28,9 +36,29 @@ public class Command
      * indicate that this was a command that is not recognised by this game.
      */
     public Command(String firstWord, String secondWord)
+    {
+        this(firstWord, secondWord, 1);
+    }
+
+    /**
+     * Create a command object that is about a number of something, for
+     * example "take 3 bread".
+     */
+    public Command(String firstWord, String secondWord, int quantity)
+    {
+        this(firstWord, secondWord, quantity, null);
+    }
+
+    /**
+     * Create a command object that says where it happens, for example
+     * "drop key in the kitchen".
+     */
+    public Command(String firstWord, String secondWord, int quantity, String place)
     {
         commandWord = firstWord;
         this.secondWord = secondWord;
+        this.quantity = quantity;
+        this.place = place;
     }
 
     /**
@@ -51,6 +79,24 @@ public class Command
         return secondWord;
     }
 
+    /**
+     * Return how many of the second word the command is about. This is 1
+     * unless a number was given.
+     */
+    public int getQuantity()
+    {
+        return quantity;
+    }
+
+    /**
+     * Return the place the command happens in, the words after "in", "on"
+     * etc. Returns null if no place was given.
+     */
+    public String getPlace()
+    {
+        return place;
+    }
+
     /**
      * Return true if this command was not understood.
      */
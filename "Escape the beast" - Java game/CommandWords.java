@@ -13,7 +13,7 @@ public class CommandWords
 {
     // a constant array that holds all valid command words
     private static final String[] validCommands = {
-        "go", "quit", "help", "take", "drop", "items", "eat", "look", "back"
+        "go", "quit", "help", "take", "drop", "items", "eat", "look", "back", "undo", "map", "scores", "hint", "memstats", "say"
     };
 
     /**
@@ -38,14 +38,37 @@ public class CommandWords
         return false;
     }
 
+    /**
+     * Return all valid command words. The array must not be changed.
+     */
+    public static String[] getCommands()
+    {
+        return validCommands;
+    }
+
     /**
      * Print all valid commands to System.out.
      */
     public void showAll() 
     {
+        System.out.println(getCommandString());
+    }
+
+    /**
+     * Return all valid commands as one string, for example "go  quit  help  ".
+     * The verbs for using items that the house added are listed too.
+     */
+    public String getCommandString()
+    {
+        StringBuilder commandString = new StringBuilder();
         for(int i = 0; i < validCommands.length; i++) {
-            System.out.print(validCommands[i] + "  ");
+            commandString.append(validCommands[i]).append("  ");
+        }
+        for(String verb : ItemEffect.getVerbs()) {
+            if(!isCommand(verb)) {
+                commandString.append(verb).append("  ");
+            }
         }
-        System.out.println();
+        return commandString.toString();
     }
 }
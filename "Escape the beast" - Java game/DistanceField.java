@@ -0,0 +1,283 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+/**
+ * Class DistanceField - how far every room is from the nearest item lying
+ * in a room, in one game.
+ *
+ * For every room the field keeps the number of moves to the nearest room
+ * with an item in it, and which room that is. It is worked out once, by a
+ * search that starts from all rooms with items at the same time and walks
+ * the exits backwards.
+ *
+ * After that the field is kept up to date as items are taken and dropped,
+ * instead of being worked out again. When items appear in a room, only the
+ * rooms that are now closer to it change. When the last item leaves a room,
+ * only the rooms for which it was the nearest are searched again, starting
+ * from the rooms around them.
+ *
+ * A field can be limited to items up to a certain weight, so that a game
+ * can keep one field for each weight the player may be able to carry and
+ * the nearest item of the field is always one the player can pick up.
+ *
+ * @author  Gunamay Sachdev
+ * @version 2020.11.24
+ */
+public class DistanceField
+{
+    // The distance of a room from which no item can be reached.
+    public static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    // The house.
+    private World world;
+    // Where the items are in the game.
+    private RoomItems roomItems;
+    // The heaviest item the field looks for.
+    private double maxWeight;
+    // The moves from each room to the nearest item, indexed by room id.
+    private int[] distance;
+    // The id of the nearest room with an item, indexed by room id, or -1.
+    private int[] nearest;
+    // The rooms waiting to be looked at during a search.
+    private int[] queue;
+    // True for the rooms that are in the queue, indexed by room id.
+    private boolean[] queued;
+
+    /**
+     * Work out the field for the items lying in the rooms of one game, and
+     * keep it up to date as they move.
+     * @param world The house.
+     * @param roomItems Where the items are in the game.
+     */
+    public DistanceField(World world, RoomItems roomItems)
+    {
+        this(world, roomItems, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Work out the field for the items up to a certain weight lying in the
+     * rooms of one game, and keep it up to date as they move.
+     * @param world The house.
+     * @param roomItems Where the items are in the game.
+     * @param maxWeight The heaviest item to look for.
+     */
+    public DistanceField(World world, RoomItems roomItems, double maxWeight)
+    {
+        this.world = world;
+        this.roomItems = roomItems;
+        this.maxWeight = maxWeight;
+        int size = world.getRoomIdLimit();
+        distance = new int[size];
+        nearest = new int[size];
+        queue = new int[size];
+        queued = new boolean[size];
+        Arrays.fill(distance, UNREACHABLE);
+        Arrays.fill(nearest, -1);
+
+        int tail = 0;
+        for(Room room : world.getRooms()) {
+            if(hasItem(room)) {
+                int id = room.getId();
+                distance[id] = 0;
+                nearest[id] = id;
+                queue[tail++] = id;
+            }
+        }
+        spread(0, tail);
+        roomItems.addDistanceField(this);
+    }
+
+    /**
+     * Return the heaviest item the field looks for.
+     * @return The weight.
+     */
+    public double getMaxWeight()
+    {
+        return maxWeight;
+    }
+
+    /**
+     * The items in a room have changed: make the room a source or stop it
+     * being one, depending on whether it still holds an item the field
+     * looks for.
+     * @param room The room.
+     */
+    public void update(Room room)
+    {
+        if(hasItem(room)) {
+            addSource(room);
+        }
+        else {
+            removeSource(room);
+        }
+    }
+
+    /**
+     * Return true if the room holds an item the field looks for.
+     */
+    private boolean hasItem(Room room)
+    {
+        for(Iterator<Item> iter = roomItems.getItems(room).iterator(); iter.hasNext(); ) {
+            if(iter.next().getWeight() <= maxWeight) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return a rough estimate of the memory the field uses, in bytes.
+     * @return The estimated size in bytes.
+     */
+    public long estimateBytes()
+    {
+        return 32 + 4 * 16 + distance.length * (4L + 4 + 4 + 1);
+    }
+
+    /**
+     * Return the number of moves from a room to the nearest room with an item.
+     * @param room The room.
+     * @return The distance, or UNREACHABLE.
+     */
+    public int getDistance(Room room)
+    {
+        return distance[room.getId()];
+    }
+
+    /**
+     * Return the nearest room with an item.
+     * @param room The room to start from.
+     * @return The nearest room with an item, or null if there is none.
+     */
+    public Room getNearest(Room room)
+    {
+        return world.getRoom(nearest[room.getId()]);
+    }
+
+    /**
+     * Return the direction to go from a room to get closer to its nearest item.
+     * @param room The room to start from.
+     * @return The direction, or null if the room has an item or none can be reached.
+     */
+    public String getDirection(Room room)
+    {
+        int id = room.getId();
+        if(distance[id] == 0 || distance[id] == UNREACHABLE) {
+            return null;
+        }
+        String direction = null;
+        for(String exit : room.getExitDirections()) {
+            int next = room.getExit(exit).getId();
+            if(next < distance.length && distance[next] == distance[id] - 1) {
+                if(nearest[next] == nearest[id]) {
+                    return exit;
+                }
+                direction = exit;   // just as close, but to another item
+            }
+        }
+        return direction;
+    }
+
+    /**
+     * Items the field looks for have appeared in a room that had none.
+     * @param room The room.
+     */
+    public void addSource(Room room)
+    {
+        int id = room.getId();
+        if(id >= distance.length || distance[id] == 0) {
+            return;
+        }
+        distance[id] = 0;
+        nearest[id] = id;
+        queue[0] = id;
+        spread(0, 1);
+    }
+
+    /**
+     * The last item the field looks for has left a room.
+     * @param room The room.
+     */
+    public void removeSource(Room room)
+    {
+        int source = room.getId();
+        if(source >= distance.length || distance[source] != 0) {
+            return;
+        }
+
+        // Find the rooms for which this room was the nearest and forget their distance.
+        int tail = 0;
+        queue[tail++] = source;
+        nearest[source] = -1;
+        distance[source] = UNREACHABLE;
+        for(int head = 0; head < tail; head++) {
+            for(int from : world.getEntrances(queue[head])) {
+                if(nearest[from] == source) {
+                    nearest[from] = -1;
+                    distance[from] = UNREACHABLE;
+                    queue[tail++] = from;
+                }
+            }
+        }
+
+        // Each of them may still reach another item through a room around it.
+        ArrayList<int[]> seeds = new ArrayList<int[]>();
+        for(int i = 0; i < tail; i++) {
+            int id = queue[i];
+            Room affected = world.getRoom(id);
+            for(String exit : affected.getExitDirections()) {
+                int next = affected.getExit(exit).getId();
+                if(next < distance.length && nearest[next] >= 0 && distance[next] + 1 < distance[id]) {
+                    distance[id] = distance[next] + 1;
+                    nearest[id] = nearest[next];
+                }
+            }
+            if(distance[id] != UNREACHABLE) {
+                seeds.add(new int[] {distance[id], id});
+            }
+        }
+
+        // Search outwards from them, closest first.
+        seeds.sort((a, b) -> Integer.compare(a[0], b[0]));
+        tail = 0;
+        for(int[] seed : seeds) {
+            queue[tail++] = seed[1];
+        }
+        spread(0, tail);
+    }
+
+    /**
+     * Search backwards along the exits from the rooms in the queue, making
+     * rooms closer where possible. The search is quickest if the queue is in
+     * order of distance.
+     */
+    private void spread(int head, int tail)
+    {
+        // A room that gets closer again after it was looked at is queued
+        // again, so the queue wraps around. A room is never in it twice.
+        int size = queue.length;
+        int waiting = tail - head;
+        for(int i = head; i < tail; i++) {
+            queued[queue[i]] = true;
+        }
+        tail = tail % size;
+        while(waiting > 0) {
+            int id = queue[head];
+            queued[id] = false;
+            head = (head + 1) % size;
+            waiting--;
+            for(int from : world.getEntrances(id)) {
+                if(distance[id] + 1 < distance[from]) {
+                    distance[from] = distance[id] + 1;
+                    nearest[from] = nearest[id];
+                    if(!queued[from]) {
+                        queued[from] = true;
+                        queue[tail] = from;
+                        tail = (tail + 1) % size;
+                        waiting++;
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,263 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+/**
+ * Class EventLog - a record of what happens in the games, for finding out
+ * how the game is played.
+ *
+ * Every event, for example a player entering a room, is packed into a
+ * single long:
+ *
+ *     bits 56-63  the kind of event, for example ENTER
+ *     bits 32-55  the id of the room
+ *     bits 16-31  the id of the item, or 0xFFFF if there is none
+ *     bits  0-15  the moves the player has used
+ *
+ * and comes with the number of the session it happened in, an int. Each
+ * player gets its own session number from newSession(), so the events of
+ * games played at the same time can be told apart. Session numbers start
+ * again at 1 when the program starts; the time of each batch tells the
+ * runs apart.
+ *
+ * Games put events into a ring buffer that is created once and never grows.
+ * Publishing an event never waits and never creates an object: if the
+ * buffer is full the event is dropped and counted instead. A background
+ * thread takes the events out of the buffer and writes them to files
+ * "events-0.bin", "events-1.bin" and so on, starting again at the first
+ * file once the last one is full. Each write is a batch: the time in
+ * milliseconds, the number of events, then each event as its long followed
+ * by its session number. When the program starts it carries on adding to
+ * the file that was written last, so the newest events of the last run are
+ * never the first to be overwritten.
+ *
+ * @author  Gunamay Sachdev
+ * @version 2020.11.24
+ */
+public class EventLog
+{
+    // The kinds of event.
+    public static final int ENTER = 1;
+    public static final int TAKE = 2;
+    public static final int DROP = 3;
+    public static final int EAT = 4;
+    public static final int DEAD = 5;
+    public static final int VICTORY = 6;
+    public static final int UNKNOWN = 7;
+    public static final int USE = 8;
+
+    // The event log shared by all games.
+    private static EventLog defaultLog;
+
+    // The events waiting to be written. 0 marks a free slot.
+    private AtomicLongArray buffer;
+    // The session of each event in the buffer.
+    private AtomicIntegerArray sessions;
+    // The last session number given out.
+    private AtomicInteger lastSession;
+    // The number of events ever published, and ever written.
+    private AtomicLong head;
+    private AtomicLong tail;
+    // The number of events dropped because the buffer was full.
+    private AtomicLong dropped;
+
+    // Where the files go, how big each may get and how many there are.
+    private File directory;
+    private long maxFileBytes;
+    private int fileCount;
+    // The file being written, its number and the bytes in it so far.
+    private DataOutputStream file;
+    private int fileNumber;
+    private long fileBytes;
+
+    /**
+     * Create an event log and start the thread that writes it.
+     * @param directory The directory the files are written to.
+     * @param capacity The number of events the buffer holds, rounded up to a power of two.
+     * @param maxFileBytes The size a file may reach before the next one is started.
+     * @param fileCount The number of files to keep.
+     */
+    public EventLog(File directory, int capacity, long maxFileBytes, int fileCount)
+    {
+        int size = Integer.highestOneBit(Math.max(capacity - 1, 1)) << 1;
+        buffer = new AtomicLongArray(size);
+        sessions = new AtomicIntegerArray(size);
+        lastSession = new AtomicInteger();
+        head = new AtomicLong();
+        tail = new AtomicLong();
+        dropped = new AtomicLong();
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.fileCount = fileCount;
+        // the first file opened is the newest one, which is added to
+        fileNumber = findNewestFile() - 1;
+
+        Thread writer = new Thread(this::writeEvents, "event-writer");
+        writer.setDaemon(true);
+        writer.start();
+        // write the last events when the program ends
+        Runtime.getRuntime().addShutdownHook(new Thread(this::drain));
+    }
+
+    /**
+     * Return the event log shared by all games, written to the current directory.
+     * @return The shared event log.
+     */
+    public static synchronized EventLog getDefault()
+    {
+        if(defaultLog == null) {
+            defaultLog = new EventLog(new File("."), 8192, 1 << 20, 4);
+        }
+        return defaultLog;
+    }
+
+    /**
+     * Return a new session number, for a player's events.
+     * @return The session number, never used before in this run.
+     */
+    public int newSession()
+    {
+        return lastSession.incrementAndGet();
+    }
+
+    /**
+     * Publish an event. If the buffer is full the event is dropped.
+     * @param session The session the event happened in, see newSession.
+     * @param kind The kind of event, for example ENTER.
+     * @param room The room the event happened in.
+     * @param item The item involved, or null.
+     * @param moves The moves the player has used.
+     */
+    public void publish(int session, int kind, Room room, Item item, int moves)
+    {
+        long event = ((long) kind << 56)
+                     | ((long) (room.getId() & 0xFFFFFF) << 32)
+                     | ((long) (item == null ? 0xFFFF : item.getId() & 0xFFFF) << 16)
+                     | (moves & 0xFFFF);
+        int mask = buffer.length() - 1;
+        long slot;
+        do {
+            slot = head.get();
+            if(slot - tail.get() > mask) {
+                dropped.incrementAndGet();
+                return;
+            }
+        } while(!head.compareAndSet(slot, slot + 1));
+        // the session goes in first, as the event marks the slot as ready
+        sessions.set((int) slot & mask, session);
+        buffer.set((int) slot & mask, event);
+    }
+
+    /**
+     * Return the number of events dropped because the buffer was full.
+     * @return The number of dropped events.
+     */
+    public long getDropped()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Return the number of events waiting to be written.
+     * @return The number of waiting events.
+     */
+    public long getWaiting()
+    {
+        return head.get() - tail.get();
+    }
+
+    /**
+     * Keep writing events until the program ends.
+     */
+    private void writeEvents()
+    {
+        while(true) {
+            if(drain() == 0) {
+                LockSupport.parkNanos(50000000L);   // nothing to do, wait 50ms
+            }
+        }
+    }
+
+    /**
+     * Write all events that are ready to the current file.
+     * @return The number of events written.
+     */
+    private synchronized int drain()
+    {
+        int mask = buffer.length() - 1;
+        long start = tail.get();
+        long end = start;
+        // an event is ready once it is in its slot, even if later ones are not yet
+        while(end < head.get() && buffer.get((int) end & mask) != 0) {
+            end++;
+        }
+        int count = (int) (end - start);
+        if(count == 0) {
+            return 0;
+        }
+        try {
+            DataOutputStream out = getFile();
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(count);
+            for(long i = start; i < end; i++) {
+                out.writeLong(buffer.get((int) i & mask));
+                out.writeInt(sessions.get((int) i & mask));
+                buffer.set((int) i & mask, 0);
+            }
+            out.flush();
+            fileBytes += 12 + 12L * count;
+        }
+        catch(IOException exc) {
+            // the events can't be written, so they are dropped
+            for(long i = start; i < end; i++) {
+                buffer.set((int) i & mask, 0);
+            }
+            dropped.addAndGet(count);
+        }
+        tail.set(end);
+        return count;
+    }
+
+    /**
+     * Return the number of the file that was written last, going by the time
+     * the files were changed, or 0 if there are none yet.
+     */
+    private int findNewestFile()
+    {
+        int newest = 0;
+        long newestTime = 0;
+        for(int number = 0; number < fileCount; number++) {
+            long time = new File(directory, "events-" + number + ".bin").lastModified();
+            if(time > newestTime) {
+                newest = number;
+                newestTime = time;
+            }
+        }
+        return newest;
+    }
+
+    /**
+     * Return the file to write to, starting the next file if the current one is full.
+     */
+    private DataOutputStream getFile() throws IOException
+    {
+        if(file == null || fileBytes >= maxFileBytes) {
+            // the first file, the newest, is added to, so a restart doesn't lose the last events
+            boolean append = (file == null);
+            if(file != null) {
+                file.close();
+            }
+            fileNumber = (fileNumber + 1) % fileCount;
+            File next = new File(directory, "events-" + fileNumber + ".bin");
+            fileBytes = append ? next.length() : 0;
+            file = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(next, append)));
+        }
+        return file;
+    }
+}
@@ -1,4 +1,6 @@
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.CopyOnWriteArrayList;
 /**
  *  This class is the main class of the "World of Zuul" application. 
  *  "Escape the beast" is a very simple, text based adventure game.
@@ -16,84 +18,114 @@ import java.util.HashMap;
 
 public class Game 
 {
+    // Fixed text that is printed often, encoded once when the game is loaded.
+    private static final byte[] WELCOME = Response.encode(
+        "\nWelcome to Escape the beast!\n" +
+        "Escape the beast is a fast-paced game, thrilling game.\n" +
+        "Your aim is to try and find 6 items spread all over the house that will help you escape.\n" +
+        "However, a powerful mysterious beast is after you.\n" +
+        "If you don't find the 6 items within a certain limit of moves, you die...\n" +
+        "Type 'help' if you need help.\n\n");
+    private static final byte[] DEAD = Response.encode(
+        "\nYou were caught by the beast and lost the game.\n" +
+        "\nYou didn't collect all 6 items in order to escape.\n");
+    private static final byte[] VICTORY = Response.encode(
+        "\nYou escaped the beast and won the game!\n" +
+        "\nCongratulations!\n");
+    private static final byte[] GOODBYE = Response.encode("Thank you for playing.  Good bye.\n");
+    private static final byte[] UNKNOWN = Response.encode("I don't know what you mean...\n");
+    private static final byte[] NO_DOOR = Response.encode("There is no door!\n");
+
     private Parser parser;
     private Player player;
+    // The house, shared with every other game.
+    private World world;
+    // The best results, shared with every other game.
+    private Leaderboard leaderboard;
+    // The record of what happens, shared with every other game.
+    private EventLog events;
+    // Where the items are in this game.
+    private RoomItems roomItems;
+    // The distances to the items, for each weight class, worked out the
+    // first time a hint is asked for. Only used by the game's own thread.
+    private HashMap<Double, DistanceField> distances;
+    // The estimated memory used by the distances, in bytes. Kept up to date
+    // by the game's own thread, so other threads can read it safely.
+    private volatile long hintBytes;
+    // The time the game started, in milliseconds.
+    private long startTime;
+    // The output of the command that is being processed.
+    private Response out;
+    // The help text, encoded once as the command words never change.
+    private byte[] helpText;
+    // The people watching this game.
+    private CopyOnWriteArrayList<Spectator> spectators;
         
     /**
-     * Create the game and initialise its internal map.
+     * Create the game in the shared house, with every item where the house puts it.
      */
     public Game() 
     {        
-        Room startRoom = createRooms(); // Creates all the rooms as soon as the game starts
-        player = new Player("Player_1", startRoom);        
-        player.enterRoom(startRoom); // start game outside
-        parser = new Parser();
-        
+        this("Player_1", new RoomItems(), Player.DEFAULT_HISTORY);
     }
 
     /**
-     * Create all the rooms and link their exits together.
-     * 
-     * @return Returns the starting room
+     * Create the game in the shared house for a named player, with every
+     * item where the house puts it. Other players in the same room see the
+     * name.
+     * @param name The player's name.
      */
-    private Room createRooms()
+    public Game(String name)
     {
-        Room entrance, hallway, bathroom, livingRoom, office, kitchen, diningRoom, garden, bedroom, vents;
-      
-        // create the rooms
-        entrance = new Room("inside the entrance of the house you are trapped in");
-        hallway = new Room("in the hallway of the house");
-        bathroom = new Room("in the bathroom");
-        livingRoom = new Room("in the living room");
-        office = new Room("in the secret office");
-        kitchen = new Room("in the kitchen");
-        diningRoom = new Room("in the dining room");
-        garden = new Room("in the garden");
-        bedroom = new Room("in the bedroom");
-        vents = new Room("in the vents");
-        
-        // put items in the room
-        diningRoom.addItem(new Item("bread", "a tasty piece of bread", 0.25));
-        vents.addItem(new Item("key", "a mysterious key", 0.1));
-        office.addItem(new Item("torch", "a functioning torch", 0.75));
-        bedroom.addItem(new Item("apple", "a magic apple", 0.01));
-        garden.addItem(new Item("knife", "A pocket knife", 0.5));
-        bathroom.addItem(new Item("string", "A piece of nylon string", 0.2));
-        livingRoom.addItem(new Item("pen", "A black pen",0.2)); 
-        kitchen.addItem(new Item("tablet","An electronic tablet", 5.0));
-        
-        // initialise room exits
-        entrance.setExit("north",hallway);
-        
-        hallway.setExit("north", diningRoom);
-        hallway.setExit("east", livingRoom);
-        hallway.setExit("south", entrance);
-        hallway.setExit("west", bathroom);
-        hallway.setExit("upstairs", bedroom);
-        
-        bathroom.setExit("east", hallway);
-        bathroom.setExit("north", kitchen);
-        
-        livingRoom.setExit("west", hallway);
-        livingRoom.setExit("east", office);
-        
-        office.setExit("west", livingRoom);
-        
-        kitchen.setExit("north", garden);
-        kitchen.setExit("east", diningRoom);
-        kitchen.setExit("south", bathroom);
-        
-        diningRoom.setExit("south", hallway);
-        diningRoom.setExit("west", kitchen);
-        
-        garden.setExit("south", kitchen);
-        
-        bedroom.setExit("downstairs", hallway);
-        bedroom.setExit("up", vents);
-        
-        vents.setExit("down", bedroom);
+        this(name, new RoomItems(), Player.DEFAULT_HISTORY);
+    }
 
-        return entrance;  // start game at the entrance
+    /**
+     * Create the game in the shared house for a named player, with every
+     * item where the house puts it, keeping the given number of changes
+     * that can be undone. Fewer changes use less memory per game.
+     * @param name The player's name.
+     * @param maxHistory The number of changes that can be undone, 0 for none.
+     */
+    public Game(String name, int maxHistory)
+    {
+        this(name, new RoomItems(), maxHistory);
+    }
+
+    /**
+     * Create the game in the shared house, with the items placed in random
+     * rooms. The same seed always gives the same placement.
+     * @param seed The seed for placing the items.
+     */
+    public Game(long seed)
+    {
+        this("Player_1", new RoomItems(World.getDefault(), seed), Player.DEFAULT_HISTORY);
+    }
+
+    /**
+     * Create the game in the shared house with the given item placement.
+     * @param name The player's name.
+     * @param roomItems Where the items are in this game.
+     * @param maxHistory The number of changes that can be undone.
+     */
+    private Game(String name, RoomItems roomItems, int maxHistory)
+    {
+        world = World.getDefault(); // the rooms are only created by the first game
+        this.roomItems = roomItems;
+        leaderboard = Leaderboard.getDefault();
+        events = EventLog.getDefault();
+        player = new Player(name, world.getStartRoom(), roomItems, maxHistory);
+        parser = new Parser();
+        out = new Response();
+        spectators = new CopyOnWriteArrayList<Spectator>();
+        distances = new HashMap<Double, DistanceField>();
+        hintBytes = 48;
+        MemoryStats.getDefault().register(this);
+        helpText = Response.encode(
+            "You are lost. You are alone. You wander\n" +
+            "around a haunted house, being chased by an unknown monster.\n\n" +
+            "Your command words are:\n" +
+            parser.getCommandString() + "\n");
     }
 
     /**
@@ -101,26 +133,139 @@ public class Game
      */
     public void play() 
     {            
-        printWelcome();
-
-        // Enter the main command loop.  Here we repeatedly read commands and
-        // execute them until the game is over.
-                
-        boolean finished = false;
-        while (! finished) {
-            Command command = parser.getCommand();
-            finished = processCommand(command);
-            
-            if(player.isDead()) {
-                printDead();
-                finished = true;
+        // Only a game that is played is in the house, where others can see it.
+        player.enterRoom(world.getStartRoom()); // start game outside
+        player.clearHistory();  // entering the house can't be undone
+        try {
+            printWelcome();
+            printMessages();
+            sendResponse();
+            startTime = System.currentTimeMillis();
+
+            // Enter the main command loop.  Here we repeatedly read commands and
+            // execute them until the game is over.
+
+            boolean finished = false;
+            while (! finished) {
+                Command command = parser.getCommand();
+                finished = processCommand(command);
+
+                if(player.isDead()) {
+                    events.publish(player.getSession(), EventLog.DEAD, player.getCurrentRoom(), null,
+                                   player.getMoves());
+                    printDead();
+                    finished = true;
+                }
+                if(player.howManyItems() == 6) {
+                    events.publish(player.getSession(), EventLog.VICTORY, player.getCurrentRoom(), null,
+                                   player.getMoves());
+                    printVictory();
+                    finished = true;
+                }
+                printMessages();
+                sendResponse();
             }
-            if(player.howManyItems() == 6) {
-                printVictory();
-                finished = true;
+            out.print(GOODBYE);
+            sendResponse();
+        }
+        finally {
+            // leave even if something went wrong, so the room doesn't keep the player
+            player.leaveHouse();
+            MemoryStats.getDefault().unregister(this);
+        }
+    }
+
+    /**
+     * Let someone watch this game. From now on they are sent everything the
+     * player sees.
+     * @param spectator The person watching.
+     */
+    public void addSpectator(Spectator spectator)
+    {
+        spectators.add(spectator);
+    }
+
+    /**
+     * Stop someone watching this game.
+     * @param spectator The person watching.
+     */
+    public void removeSpectator(Spectator spectator)
+    {
+        spectators.remove(spectator);
+        spectator.close();
+    }
+
+    /**
+     * Return the number of people watching this game.
+     * @return The number of spectators.
+     */
+    public int getSpectatorCount()
+    {
+        return spectators.size();
+    }
+
+    /**
+     * Return a rough estimate of the memory this game uses, in bytes. The
+     * house is shared by all games and not counted. It may be asked for
+     * from any thread, while the game is being played.
+     * @return The estimated size in bytes.
+     */
+    public long estimateBytes()
+    {
+        return 80 + player.estimateBytes() + roomItems.estimateBytes() + parser.estimateBytes()
+            + getHintBytes()
+            + helpText.length + 16 + spectators.size() * 256L;
+    }
+
+    /**
+     * Return a rough estimate of the memory used by the distances kept for
+     * hints, in bytes.
+     */
+    private long getHintBytes()
+    {
+        return hintBytes;
+    }
+
+    /**
+     * Return a description of the memory this game uses.
+     * @return The description.
+     */
+    public String getMemoryString()
+    {
+        return "This game: about " + estimateBytes() + " bytes"
+            + "\n  player " + player.getName() + ": " + player.estimateBytes()
+            + ", items moved: " + roomItems.estimateBytes()
+            + ", parser: " + parser.estimateBytes()
+            + ", hints: " + getHintBytes()
+            + ", spectators: " + spectators.size();
+    }
+
+    /**
+     * Write the output of the last command to the player and hand the same
+     * bytes to every spectator. Spectators that can't keep up are removed.
+     */
+    private void sendResponse()
+    {
+        byte[] response = out.take();
+        System.out.write(response, 0, response.length);
+        System.out.flush();
+        for(Spectator spectator : spectators) {
+            if(!spectator.send(response)) {
+                spectators.remove(spectator);
             }
         }
-        System.out.println("Thank you for playing.  Good bye.");
+    }
+
+    /**
+     * Print what other players have said or done since the last command.
+     */
+    private void printMessages()
+    {
+        String message = player.nextMessage();
+        while(message != null) {
+            out.println(message);
+            message = player.nextMessage();
+        }
     }
 
     /**
@@ -128,15 +273,8 @@ public class Game
      */
     private void printWelcome()
     {
-        System.out.println();
-        System.out.println("Welcome to Escape the beast!");
-        System.out.println("Escape the beast is a fast-paced game, thrilling game.");
-        System.out.println("Your aim is to try and find 6 items spread all over the house that will help you escape.");
-        System.out.println("However, a powerful mysterious beast is after you.");
-        System.out.println("If you don't find the 6 items within a certain limit of moves, you die...");
-        System.out.println("Type 'help' if you need help.");
-        System.out.println();
-        System.out.println(player.getLongDescription());
+        out.print(WELCOME);
+        player.printLongDescription(out);
     }
     
     /**
@@ -144,8 +282,7 @@ public class Game
      */
     private void printDead() 
     {
-        System.out.println("\nYou were caught by the beast and lost the game.");
-        System.out.println("\nYou didn't collect all 6 items in order to escape.");
+        out.print(DEAD);
     }
     
     /**
@@ -153,8 +290,11 @@ public class Game
      */
     private void printVictory() 
     {
-        System.out.println("\nYou escaped the beast and won the game!");
-        System.out.println("\nCongratulations!");
+        out.print(VICTORY);
+        Leaderboard.Score score = leaderboard.record(world.getId(), player.getName(), player.getMoves(),
+                                                     System.currentTimeMillis() - startTime);
+        out.println("You escaped in " + score.getMoves() + " moves and are ranked number "
+                    + leaderboard.getRank(score) + ".");
     }
 
     /**
@@ -167,7 +307,9 @@ public class Game
         boolean wantToQuit = false;
 
         if(command.isUnknown()) {
-            System.out.println("I don't know what you mean...");
+            events.publish(player.getSession(), EventLog.UNKNOWN, player.getCurrentRoom(), null,
+                           player.getMoves());
+            out.print(UNKNOWN);
             return false;
         }
 
@@ -197,6 +339,28 @@ public class Game
         else if (commandWord.equals("back")){
             goBack(command);
         }
+        else if (commandWord.equals("undo")) {
+            undo(command);
+        }
+        else if (commandWord.equals("hint")) {
+            hint();
+        }
+        else if (commandWord.equals("memstats")) {
+            out.println(getMemoryString());
+            out.println(MemoryStats.getDefault().getSummary());
+        }
+        else if (commandWord.equals("scores")) {
+            out.println(leaderboard.getTopString(world.getId(), 5));
+        }
+        else if (commandWord.equals("say")) {
+            say(command);
+        }
+        else if (commandWord.equals("map")) {
+            out.println(world.getMap().render(player.getVisitedRooms(), player.getCurrentRoom()));
+        }
+        else if (ItemEffect.getVerb(commandWord) >= 0) {
+            use(command, ItemEffect.getVerb(commandWord));
+        }
         return wantToQuit;
     }
 
@@ -209,11 +373,7 @@ public class Game
      */
     private void printHelp() 
     {
-        System.out.println("You are lost. You are alone. You wander");
-        System.out.println("around a haunted house, being chased by an unknown monster.");
-        System.out.println();
-        System.out.println("Your command words are:");
-        parser.showCommands();
+        out.print(helpText);
     }
 
     /** 
@@ -224,7 +384,7 @@ public class Game
     {
         if(!command.hasSecondWord()) {
             // if there is no second word, we don't know where to go...
-            System.out.println("Go where?");
+            out.println("Go where?");
             return;
         }
 
@@ -234,10 +394,10 @@ public class Game
         Room nextRoom = player.getCurrentRoom().getExit(direction);
 
         if (nextRoom == null)
-            System.out.println("There is no door!");
+            out.print(NO_DOOR);
         else {
             player.enterRoom(nextRoom);
-            System.out.println(player.getLongDescription());
+            player.printLongDescription(out);
         }
     }
     
@@ -248,18 +408,130 @@ public class Game
         if(!command.hasSecondWord()){
             Room nextRoom = player.getLastRoom();
             player.enterRoom(nextRoom);
-            System.out.println(player.getLongDescription());
+            player.printLongDescription(out);
         }
 
     }
     
+    /**
+     * Undoes the player's last changes. "undo" on its own undoes one change,
+     * "undo 3" undoes the last three.
+     */
+    private void undo(Command command)
+    {
+        int steps = 1;
+        if(command.hasSecondWord()) {
+            try {
+                steps = Integer.parseInt(command.getSecondWord());
+            }
+            catch(NumberFormatException exc) {
+                steps = 0;
+            }
+            if(steps < 1) {
+                out.println("Undo how many steps?");
+                return;
+            }
+        }
+        int undone = player.undo(steps);
+        if(undone == 0) {
+            out.println("There is nothing to undo.");
+            return;
+        }
+        out.println("Undid " + undone + " step(s). " + player.getHistorySize() + " step(s) left to undo, "
+            + Change.BYTES + " bytes each.");
+        player.printLongDescription(out);
+    }
+
+    /**
+     * Tells the player which way to go to an item they can carry, and
+     * whether they can get there before the beast comes. The item is the
+     * nearest one in the player's weight class, so there may be a closer
+     * one that is only a little heavier.
+     */
+    private void hint()
+    {
+        Room here = player.getCurrentRoom();
+        int movesLeft = player.getMaxMoves() - player.getMoves();
+
+        // The field for the player's weight class only leads to items they
+        // can pick up, so its nearest item is the answer. There are only a
+        // few classes, so a game never keeps more than a few fields.
+        double weightClass = world.getWeightClass(player.getWeightLeft());
+        DistanceField field = weightClass < 0 ? null : getDistanceField(weightClass);
+        Room target = field == null ? null : field.getNearest(here);
+
+        if(target == null) {
+            out.println("There is nothing left that you can reach and carry.");
+            return;
+        }
+        int distance = field.getDistance(here);
+        if(distance == 0) {
+            out.println("Look around, there is " + findCarriable(target, weightClass).getDescription() + " right here.");
+        }
+        else {
+            out.println("Something you can carry is " + distance + " move(s) away. Try going "
+                        + field.getDirection(here) + ".");
+            if(distance > movesLeft) {
+                out.println("But you only have " + Math.max(movesLeft, 0) + " move(s) left before the beast comes...");
+            }
+        }
+    }
+
+    /**
+     * Return the distances to the items up to the given weight, working them
+     * out the first time they are needed. There is one field for each
+     * weight class, see World.getWeightClass.
+     */
+    private DistanceField getDistanceField(double weightClass)
+    {
+        DistanceField field = distances.get(weightClass);
+        if(field == null) {
+            field = new DistanceField(world, roomItems, weightClass);
+            distances.put(weightClass, field);
+            hintBytes += 48 + field.estimateBytes();    // a field never grows
+        }
+        return field;
+    }
+
+    /**
+     * Return an item in the room that weighs no more than the given weight, or null.
+     */
+    private Item findCarriable(Room room, double maxWeight)
+    {
+        for(Iterator<Item> iter = roomItems.getItems(room).iterator(); iter.hasNext(); ) {
+            Item item = iter.next();
+            if(item.getWeight() <= maxWeight) {
+                return item;
+            }
+        }
+        return null;
+    }
+
     /**
      * Prints out the information about the room they are currently in - the items that are located
      * in the room and what exista are available.
      */
     private void look()
     {
-        System.out.println(player.getCurrentRoom().getLongDescription());
+        player.printRoomDescription(out);
+    }
+
+    /**
+     * Say something to the other players in the room.
+     */
+    private void say(Command command)
+    {
+        if(!command.hasSecondWord()) {
+            out.println("Say what?");
+            return;
+        }
+        int heard = player.say(command.getSecondWord());
+        if(heard == 0) {
+            out.println("Nobody is here to hear you.");
+        }
+        else {
+            out.println("You said it to " + heard + " player(s).");
+        }
     }
 
     /** 
@@ -270,7 +542,7 @@ public class Game
     private boolean quit(Command command) 
     {
         if(command.hasSecondWord()) {
-            System.out.println("Quit what?");
+            out.println("Quit what?");
             return false;
         }
         else
@@ -285,18 +557,24 @@ public class Game
     {
         if(!command.hasSecondWord()) {
             // if there is no second word, we don't know what to take...
-            System.out.println("What do you want to take?");
+            out.println("What do you want to take?");
+            return;
+        }
+        if(!isHere(command)) {
+            out.println("You can only take things from the room you are in.");
             return;
         }
 
         String itemName = command.getSecondWord();
-        Item item = player.pickUpItem(itemName);
+        int quantity = command.getQuantity();
+        Item item = player.pickUpItem(itemName, quantity);
         
         if(item == null) {
-            System.out.println("You can't pick up the item: " + itemName);
-            System.out.println("You either don't have enough weight to carry it or you mispelt your input.");
+            out.println("You can't pick up " + (quantity > 1 ? quantity + " of " : "") + "the item: " + itemName);
+            out.println("You either don't have enough weight to carry it or you mispelt your input.");
         } else {
-            System.out.println("You picked up " + item.getDescription());
+            events.publish(player.getSession(), EventLog.TAKE, player.getCurrentRoom(), item, player.getMoves());
+            out.println("You picked up " + item.getDescription() + (quantity > 1 ? " (x" + quantity + ")" : ""));
         }
     }
     
@@ -308,45 +586,85 @@ public class Game
     {
         if(!command.hasSecondWord()) {
             // if there is no second word, we don't know what to drop...
-            System.out.println("What do you want to drop?");
+            out.println("What do you want to drop?");
+            return;
+        }
+        if(!isHere(command)) {
+            out.println("You can only drop things in the room you are in.");
             return;
         }
 
         String itemName = command.getSecondWord();
-        Item item = player.dropItem(itemName);
+        int quantity = command.getQuantity();
+        Item item = player.dropItem(itemName, quantity);
         
         if(item == null) {
-            System.out.println("You don't carry the item: " + itemName);
+            out.println("You don't carry " + (quantity > 1 ? quantity + " of " : "") + "the item: " + itemName);
         } else {
-            System.out.println("You dropped " + item.getDescription());
+            events.publish(player.getSession(), EventLog.DROP, player.getCurrentRoom(), item, player.getMoves());
+            out.println("You dropped " + item.getDescription() + (quantity > 1 ? " (x" + quantity + ")" : ""));
         }
     }
     
+    /**
+     * Return true if the command gives no place, or the place is the name
+     * of the room the player is in, as in "drop key in the kitchen" in the
+     * kitchen.
+     */
+    private boolean isHere(Command command)
+    {
+        String place = command.getPlace();
+        return place == null || world.getRoom(place) == player.getCurrentRoom();
+    }
+
     /**
      * Prints out the items that the player is currently carrying.
      */
     private void printItems() {
-        System.out.println(player.getItemsString());   
+        out.println(player.getItemsString());   
     }
     
     /** 
-     * Try to take an item from the current room. If the item is there,
-     * pick it up, if not print an error message.
+     * Try to eat an item from the inventory or the current room. If it can
+     * be eaten, print what it did, if not print an error message.
      */
     private void eat(Command command) 
     {
+        use(command, ItemEffect.EAT);
+    }
+
+    /**
+     * Try to use an item from the inventory or the current room in the way
+     * the verb says, for example "read note" for a verb the rules of the
+     * house added. If it can be used, print what it did, if not print an
+     * error message.
+     */
+    private void use(Command command, int verb)
+    {
+        String verbName = ItemEffect.getVerbs().get(verb);
         if(!command.hasSecondWord()) {
-            // if there is no second word, we don't know what to eat
-            System.out.println("What do you want to eat?");
+            // if there is no second word, we don't know what to use
+            out.println("What do you want to " + verbName + "?");
             return;
         }
         String itemName = command.getSecondWord();
-        Item item = player.eat(itemName);
+        Item item = player.use(verb, itemName);
         if(item == null) {
-            System.out.println("You can't eat " + itemName + "!");            
+            out.println("You can't " + verbName + " " + itemName + "!");            
         } 
         else {
-            System.out.println("You ate " + item.getDescription());
+            events.publish(player.getSession(), verb == ItemEffect.EAT ? EventLog.EAT : EventLog.USE,
+                           player.getCurrentRoom(), item, player.getMoves());
+            String message = item.getEffect(verb).getMessage();
+            if(message.length() > 0) {
+                out.println(message);
+            }
+            if(verb == ItemEffect.EAT) {
+                out.println("You ate " + item.getDescription());
+            }
+            else {
+                out.println("You " + verbName + " " + item.getDescription());
+            }
         }
     }
 }
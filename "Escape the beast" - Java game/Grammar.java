@@ -0,0 +1,353 @@
+import java.util.Arrays;
+/**
+ * Class Grammar - the words and phrases the game understands, and how they
+ * are put together into a command.
+ *
+ * Besides the command words themselves the grammar knows:
+ *
+ *  - synonyms, for example "grab" and "pick up" for take, or "n" for go north,
+ *  - articles such as "the" and "a", which are skipped,
+ *  - prepositions such as "in", which say where something happens, as in
+ *    "drop key in the kitchen",
+ *  - numbers, which say how many of something, as in "take 3 bread".
+ *
+ * After "say" the rest of the line is kept as it was typed, as the second word.
+ *
+ * All phrases are compiled once, when the grammar is created, into an
+ * automaton with one state per prefix of a phrase. Reading a line means
+ * following one entry of a table per letter, so reading takes the same
+ * time however many phrases there are. A phrase can have several words,
+ * so after a word the automaton tries to carry on into the next one and
+ * keeps the longest phrase it found. A letter is only read again when a
+ * longer phrase was started but not finished, so no letter is read more
+ * times than the longest phrase has words.
+ *
+ * @author  Gunamay Sachdev
+ * @version 2020.11.24
+ */
+public class Grammar
+{
+    // The kinds of words and phrases.
+    public static final int VERB = 0;
+    public static final int DIRECTION = 1;
+    public static final int ARTICLE = 2;
+    public static final int PREPOSITION = 3;
+    public static final int WORD = 4;
+    public static final int NUMBER = 5;
+
+    // Other ways of saying a command: the phrase, then the command word.
+    private static final String[][] SYNONYMS = {
+        {"grab", "take"}, {"get", "take"}, {"pick up", "take"},
+        {"put down", "drop"}, {"discard", "drop"},
+        {"walk", "go"}, {"move", "go"},
+        {"l", "look"}, {"look around", "look"},
+        {"i", "items"}, {"inventory", "items"},
+        {"consume", "eat"},
+        {"exit", "quit"}, {"q", "quit"},
+        {"go back", "back"}
+    };
+
+    // Directions, then what they are short for.
+    private static final String[][] DIRECTIONS = {
+        {"north", "north"}, {"south", "south"}, {"east", "east"}, {"west", "west"},
+        {"up", "up"}, {"down", "down"}, {"upstairs", "upstairs"}, {"downstairs", "downstairs"},
+        {"n", "north"}, {"s", "south"}, {"e", "east"}, {"w", "west"}, {"u", "up"}, {"d", "down"}
+    };
+
+    private static final String[] ARTICLES = {"the", "a", "an", "some"};
+
+    private static final String[] PREPOSITIONS = {"in", "into", "on", "onto", "at", "from", "to"};
+
+    // The command words that are followed by free text instead of words.
+    private static final String[] TEXT_COMMANDS = {"say"};
+
+    // The letters a to z, and the space between the words of a phrase.
+    private static final int WIDTH = 27;
+    private static final int SPACE = 26;
+
+    // The most words looked at in one line.
+    private static final int MAX_WORDS = 16;
+
+    private static Grammar defaultGrammar;
+
+    // The next state for each state and letter, at state * WIDTH + letter, or -1.
+    private int[] next;
+    // The phrase that ends in each state, or -1.
+    private int[] accept;
+    private int stateCount;
+
+    // The kind and meaning of each phrase.
+    private int[] kinds;
+    private String[] values;
+    private int phraseCount;
+
+    /**
+     * Create an empty grammar that knows no phrases.
+     */
+    public Grammar()
+    {
+        next = new int[64 * WIDTH];
+        accept = new int[64];
+        kinds = new int[64];
+        values = new String[64];
+        Arrays.fill(next, -1);
+        Arrays.fill(accept, -1);
+        stateCount = 1;     // state 0 is the start
+    }
+
+    /**
+     * Return the grammar of the game, created the first time it is needed.
+     * It knows the verbs for using items that were added by then, so it
+     * should be created after the house is loaded.
+     * @return The grammar with the command words, item verbs, synonyms,
+     * directions, articles and prepositions.
+     */
+    public static synchronized Grammar getDefault()
+    {
+        if(defaultGrammar == null) {
+            Grammar grammar = new Grammar();
+            for(String command : CommandWords.getCommands()) {
+                grammar.add(command, VERB, command);
+            }
+            // the ways of using items added by the rules of the house
+            for(String verb : ItemEffect.getVerbs()) {
+                grammar.add(verb, VERB, verb);
+            }
+            for(String[] synonym : SYNONYMS) {
+                grammar.add(synonym[0], VERB, synonym[1]);
+            }
+            for(String[] direction : DIRECTIONS) {
+                grammar.add(direction[0], DIRECTION, direction[1]);
+            }
+            for(String article : ARTICLES) {
+                grammar.add(article, ARTICLE, article);
+            }
+            for(String preposition : PREPOSITIONS) {
+                grammar.add(preposition, PREPOSITION, preposition);
+            }
+            defaultGrammar = grammar;
+        }
+        return defaultGrammar;
+    }
+
+    /**
+     * Add a phrase to the grammar.
+     * @param phrase One or more words made of the letters a to z, with one
+     * space between the words.
+     * @param kind What kind of phrase it is, for example VERB.
+     * @param value What it means, for example the command word.
+     * @throws IllegalArgumentException if the phrase has other characters,
+     * or is already known with another meaning.
+     */
+    public void add(String phrase, int kind, String value)
+    {
+        int state = 0;
+        for(int i = 0; i < phrase.length(); i++) {
+            int letter = getLetter(phrase.charAt(i));
+            if(letter < 0 || (letter == SPACE && (i == 0 || i == phrase.length() - 1
+                                                  || phrase.charAt(i - 1) == ' '))) {
+                throw new IllegalArgumentException("Bad phrase: \"" + phrase + "\"");
+            }
+            if(next[state * WIDTH + letter] < 0) {
+                int added = newState();     // may make the table bigger
+                next[state * WIDTH + letter] = added;
+            }
+            state = next[state * WIDTH + letter];
+        }
+        if(state == 0) {
+            throw new IllegalArgumentException("Empty phrase");
+        }
+        if(accept[state] >= 0) {
+            if(kinds[accept[state]] != kind || !values[accept[state]].equals(value)) {
+                throw new IllegalArgumentException("\"" + phrase + "\" already means "
+                                                   + values[accept[state]]);
+            }
+            return;
+        }
+        if(phraseCount == kinds.length) {
+            kinds = Arrays.copyOf(kinds, phraseCount * 2);
+            values = Arrays.copyOf(values, phraseCount * 2);
+        }
+        kinds[phraseCount] = kind;
+        values[phraseCount] = value;
+        accept[state] = phraseCount++;
+    }
+
+    /**
+     * Read a line and turn it into a command. Anything that isn't a command
+     * word, synonym or direction at the start of the line gives an unknown
+     * command.
+     * @param line The line typed in.
+     * @return The command.
+     */
+    public Command parse(String line)
+    {
+        int[] wordKinds = new int[MAX_WORDS];
+        String[] words = new String[MAX_WORDS];
+        int[] ends = new int[MAX_WORDS];
+        int count = split(line, wordKinds, words, ends);
+
+        int i = 0;
+        while(i < count && wordKinds[i] == ARTICLE) {
+            i++;
+        }
+        if(i == count) {
+            return new Command(null, null);
+        }
+        if(wordKinds[i] == DIRECTION) {
+            // "n" or "north" on its own
+            return new Command("go", words[i]);
+        }
+        if(wordKinds[i] != VERB) {
+            return new Command(null, i + 1 < count ? words[i + 1] : null);
+        }
+
+        String commandWord = words[i];
+        for(String textCommand : TEXT_COMMANDS) {
+            if(textCommand.equals(commandWord)) {
+                String text = line.substring(ends[i]).trim();
+                return new Command(commandWord, text.isEmpty() ? null : text);
+            }
+        }
+        String secondWord = null;
+        int quantity = 1;
+        StringBuilder place = null;
+        for(i++; i < count; i++) {
+            int kind = wordKinds[i];
+            if(kind == ARTICLE) {
+                continue;
+            }
+            if(kind == PREPOSITION && place == null) {
+                place = new StringBuilder();
+            }
+            else if(place != null) {
+                // "in the living room": every word after the preposition
+                place.append(place.length() == 0 ? "" : " ").append(words[i]);
+            }
+            else if(kind == NUMBER && secondWord == null && quantity == 1 && i + 1 < count) {
+                // "take 3 bread": the number is the quantity, the next word the item
+                quantity = Integer.parseInt(words[i]);
+            }
+            else if(secondWord == null) {
+                secondWord = words[i];
+            }
+        }
+        if(place != null && place.length() > 0) {
+            return new Command(commandWord, secondWord, quantity, place.toString());
+        }
+        return new Command(commandWord, secondWord, quantity);
+    }
+
+    /**
+     * Split a line into known phrases and other words, taking the longest
+     * known phrase each time. The end of each word in the line is put in ends.
+     * @return The number of words found, at most MAX_WORDS.
+     */
+    private int split(String line, int[] wordKinds, String[] words, int[] ends)
+    {
+        int length = line.length();
+        int count = 0;
+        int start = skipSpaces(line, 0);
+        while(start < length && count < MAX_WORDS) {
+            int state = 0;
+            int found = -1;     // the longest phrase so far
+            int foundEnd = start;
+            int i = start;
+            while(state >= 0) {
+                if(i == length || line.charAt(i) <= ' ') {
+                    // the end of a word: remember a phrase that ends here
+                    if(accept[state] >= 0) {
+                        found = accept[state];
+                        foundEnd = i;
+                    }
+                    i = skipSpaces(line, i);
+                    if(i == length) {
+                        break;
+                    }
+                    state = next[state * WIDTH + SPACE];
+                }
+                else {
+                    int letter = getLetter(line.charAt(i));
+                    state = letter < 0 ? -1 : next[state * WIDTH + letter];
+                    i++;
+                }
+            }
+
+            if(found >= 0) {
+                wordKinds[count] = kinds[found];
+                words[count] = values[found];
+                ends[count] = foundEnd;
+                start = skipSpaces(line, foundEnd);
+            }
+            else {
+                // not a known phrase: the word is taken as it is
+                int end = start;
+                while(end < length && line.charAt(end) > ' ') {
+                    end++;
+                }
+                String word = line.substring(start, end).toLowerCase();
+                wordKinds[count] = isNumber(word) ? NUMBER : WORD;
+                words[count] = word;
+                ends[count] = end;
+                start = skipSpaces(line, end);
+            }
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Return the position of the first character from the given one on that isn't a space.
+     */
+    private static int skipSpaces(String line, int i)
+    {
+        while(i < line.length() && line.charAt(i) <= ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * Return the column of the table for a character, or -1 if no phrase uses it.
+     */
+    private static int getLetter(char c)
+    {
+        if(c >= 'a' && c <= 'z')
+            return c - 'a';
+        if(c >= 'A' && c <= 'Z')
+            return c - 'A';
+        if(c == ' ')
+            return SPACE;
+        return -1;
+    }
+
+    /**
+     * Return true if the word is a whole number small enough to be a quantity.
+     */
+    private static boolean isNumber(String word)
+    {
+        if(word.length() > 9) {
+            return false;
+        }
+        for(int i = 0; i < word.length(); i++) {
+            if(!Character.isDigit(word.charAt(i)))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Add a state to the automaton, making the table bigger if it is full.
+     */
+    private int newState()
+    {
+        if(stateCount == accept.length) {
+            int oldSize = next.length;
+            next = Arrays.copyOf(next, oldSize * 2);
+            Arrays.fill(next, oldSize, next.length, -1);
+            accept = Arrays.copyOf(accept, stateCount * 2);
+            Arrays.fill(accept, stateCount, accept.length, -1);
+        }
+        return stateCount++;
+    }
+}
@@ -1,3 +1,4 @@
+import java.util.Arrays;
 /**
  * Class Item - an item in an adventure game.
  *
@@ -10,12 +11,16 @@
  */
 public class Item
 {
+    // A number that identifies the item.
+    private int id;
     // The name of the item.
     private String name;
     // A description of the item.
     private String description;
     // The weight of the item.
     private double weight;
+    // What happens when the item is used, indexed by the number of the verb.
+    private ItemEffect[] effects;
     
     /**
      * Create a new item with the given description and weight.
@@ -25,9 +30,31 @@ public class Item
      */
     public Item(String name, String description, double weight)
     {
+        this.id = -1;   // given by the World the item is put in
         this.name = name;
         this.description = description;
         this.weight = weight;
+        this.effects = new ItemEffect[ItemEffect.getVerbCount()];
+    }
+
+    /**
+     * Return the number that identifies the item. The items of a World are
+     * numbered from 0.
+     * @return The id, or -1 if the item isn't in a world yet
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    /**
+     * Set the number that identifies this item. Only called by the World
+     * the item is put in.
+     * @param id The id
+     */
+    public void setId(int id)
+    {
+        this.id = id;
     }
 
     /**
@@ -56,4 +83,28 @@ public class Item
     {
         return description;
     }
+
+    /**
+     * Return what happens when the item is used in the given way.
+     * @param verb The number of the verb, for example ItemEffect.EAT.
+     * @return The effect, or null if the item can't be used that way.
+     */
+    public ItemEffect getEffect(int verb)
+    {
+        return verb < effects.length ? effects[verb] : null;
+    }
+
+    /**
+     * Set what happens when the item is used in the given way.
+     * @param verb The number of the verb, for example ItemEffect.EAT.
+     * @param effect The effect.
+     */
+    public void setEffect(int verb, ItemEffect effect)
+    {
+        if(verb >= effects.length) {
+            // the verb was added after the item was created
+            effects = Arrays.copyOf(effects, ItemEffect.getVerbCount());
+        }
+        effects[verb] = effect;
+    }
 }
\ No newline at end of file
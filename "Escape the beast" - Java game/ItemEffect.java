@@ -0,0 +1,291 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.StringTokenizer;
+import java.util.concurrent.CopyOnWriteArrayList;
+/**
+ * Class ItemEffect - what happens when an item is used in a certain way,
+ * for example when the magic apple is eaten.
+ *
+ * Effects are written as rules, one per line, in the form
+ *
+ *     item verb effect amount [effect amount ...] [for n] : message
+ *
+ * for example "apple eat weight 1 : You feel stronger!". The effects are:
+ *
+ *     weight n     the player can carry n more
+ *     moves n      the player gets n more moves before the beast comes
+ *     teleport n   the player is moved to room number n of the house
+ *
+ * With "for n" the weight and moves only last for the player's next n
+ * moves, otherwise they last for the rest of the game. A "|" in the
+ * message starts a new line.
+ *
+ * Rules are usually read from a file with loadFile. Besides rules the file
+ * can have lines "verb name", which add a new way of using items, for
+ * example "verb read", and lines starting with "#", which are skipped.
+ * Each rule is turned into an ItemEffect once, when the house is created,
+ * and stored in the item under the number of its verb, so using an item
+ * never has to look at its name.
+ *
+ * @author  Gunamay Sachdev
+ * @version 2020.11.24
+ */
+public class ItemEffect
+{
+    // The verbs items can be used with. A verb's number is its place in this
+    // list. Verbs are only ever added, so a number never changes.
+    private static final List<String> verbs = new CopyOnWriteArrayList<String>(new String[] {"eat"});
+    public static final int EAT = 0;
+
+    // The weight the player can carry in addition.
+    private double weight;
+    // The moves the player gets in addition.
+    private int moves;
+    // The room the player is moved to, or null.
+    private Room teleport;
+    // The number of moves the weight and moves last, or 0 for the rest of the game.
+    private int duration;
+    // The message printed when the effect happens.
+    private String message;
+
+    /**
+     * Create an effect.
+     * @param weight The weight the player can carry in addition.
+     * @param moves The moves the player gets in addition.
+     * @param teleport The room the player is moved to, or null.
+     * @param message The message printed when the effect happens.
+     */
+    public ItemEffect(double weight, int moves, Room teleport, String message)
+    {
+        this(weight, moves, teleport, 0, message);
+    }
+
+    /**
+     * Create an effect whose weight and moves only last for a while.
+     * @param weight The weight the player can carry in addition.
+     * @param moves The moves the player gets in addition.
+     * @param teleport The room the player is moved to, or null.
+     * @param duration The number of moves the weight and moves last, or 0
+     * for the rest of the game.
+     * @param message The message printed when the effect happens.
+     */
+    public ItemEffect(double weight, int moves, Room teleport, int duration, String message)
+    {
+        this.weight = weight;
+        this.moves = moves;
+        this.teleport = teleport;
+        this.duration = duration;
+        this.message = message;
+    }
+
+    /**
+     * Return the number of verbs items can be used with.
+     * @return The number of verbs.
+     */
+    public static int getVerbCount()
+    {
+        return verbs.size();
+    }
+
+    /**
+     * Return the verbs items can be used with, in the order of their numbers.
+     * @return The verbs, for example "eat".
+     */
+    public static List<String> getVerbs()
+    {
+        return Collections.unmodifiableList(verbs);
+    }
+
+    /**
+     * Add a new way of using items, unless it is already known. The verb
+     * can then be typed as a command, for example "read note".
+     * @param verb The verb, made of the letters a to z.
+     * @return The number of the verb.
+     * @throws IllegalArgumentException if the verb has other characters or
+     * is a command word of its own, such as "go".
+     */
+    public static synchronized int addVerb(String verb)
+    {
+        int number = getVerb(verb);
+        if(number >= 0) {
+            return number;
+        }
+        if(!verb.matches("[a-z]+")) {
+            throw new IllegalArgumentException("Bad verb: \"" + verb + "\"");
+        }
+        if(new CommandWords().isCommand(verb)) {
+            throw new IllegalArgumentException("\"" + verb + "\" is already a command");
+        }
+        verbs.add(verb);
+        return verbs.size() - 1;
+    }
+
+    /**
+     * Read a file of rules and verbs, see the description of the class.
+     * @param file The file.
+     * @param world The house, used to find the items and the rooms.
+     * @return The number of rules read.
+     * @throws IOException if the file can't be read.
+     * @throws IllegalArgumentException if a line can't be understood. The
+     * message says which line it is.
+     */
+    public static int loadFile(File file, World world) throws IOException
+    {
+        int rules = 0;
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line = reader.readLine();
+            for(int number = 1; line != null; number++, line = reader.readLine()) {
+                line = line.trim();
+                if(line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                try {
+                    if(line.startsWith("verb ")) {
+                        addVerb(line.substring(5).trim());
+                    }
+                    else {
+                        load(line, world);
+                        rules++;
+                    }
+                }
+                catch(IllegalArgumentException exc) {
+                    throw new IllegalArgumentException(file + ", line " + number + ": " + exc.getMessage());
+                }
+            }
+        }
+        return rules;
+    }
+
+    /**
+     * Read a rule and give the effect to the item it names.
+     * @param rule The rule, for example "apple eat weight 1 : You feel stronger!".
+     * @param world The house, used to find the item and the rooms.
+     * @throws IllegalArgumentException if the rule can't be understood.
+     */
+    public static void load(String rule, World world)
+    {
+        String message = "";
+        int colon = rule.indexOf(':');
+        if(colon >= 0) {
+            message = rule.substring(colon + 1).trim().replace('|', '\n');
+            rule = rule.substring(0, colon);
+        }
+
+        StringTokenizer tokenizer = new StringTokenizer(rule);
+        if(tokenizer.countTokens() < 2) {
+            throw new IllegalArgumentException("Missing item or verb in effect: " + rule);
+        }
+        String itemName = tokenizer.nextToken();
+        String verbName = tokenizer.nextToken();
+        int verb = getVerb(verbName);
+        if(verb < 0) {
+            throw new IllegalArgumentException("Unknown verb in effect: " + verbName);
+        }
+
+        double weight = 0;
+        int moves = 0;
+        Room teleport = null;
+        int duration = 0;
+        while(tokenizer.hasMoreTokens()) {
+            String kind = tokenizer.nextToken();
+            if(!tokenizer.hasMoreTokens()) {
+                throw new IllegalArgumentException("Missing amount for " + kind + " in effect: " + rule);
+            }
+            String amount = tokenizer.nextToken();
+            try {
+                if(kind.equals("weight")) {
+                    weight += Double.parseDouble(amount);
+                }
+                else if(kind.equals("moves")) {
+                    moves += Integer.parseInt(amount);
+                }
+                else if(kind.equals("teleport")) {
+                    teleport = world.getRooms().get(Integer.parseInt(amount));
+                }
+                else if(kind.equals("for")) {
+                    duration = Integer.parseInt(amount);
+                    if(duration < 1) {
+                        throw new IllegalArgumentException("Bad amount for " + kind + " in effect: " + rule);
+                    }
+                }
+                else {
+                    throw new IllegalArgumentException("Unknown effect: " + kind);
+                }
+            }
+            catch(NumberFormatException | IndexOutOfBoundsException exc) {
+                throw new IllegalArgumentException("Bad amount for " + kind + " in effect: " + rule);
+            }
+        }
+
+        List<Item> items = world.findItems(itemName);
+        if(items.isEmpty()) {
+            throw new IllegalArgumentException("Unknown item in effect: " + itemName);
+        }
+        ItemEffect effect = new ItemEffect(weight, moves, teleport, duration, message);
+        for(Item item : items) {
+            item.setEffect(verb, effect);
+        }
+    }
+
+    /**
+     * Return the number of a verb, or -1 if items can't be used that way.
+     * @param verb The verb, for example "eat".
+     * @return The number of the verb.
+     */
+    public static int getVerb(String verb)
+    {
+        return verbs.indexOf(verb);
+    }
+
+    /**
+     * Return the weight the player can carry in addition.
+     * @return The extra weight.
+     */
+    public double getWeight()
+    {
+        return weight;
+    }
+
+    /**
+     * Return the moves the player gets in addition.
+     * @return The extra moves.
+     */
+    public int getMoves()
+    {
+        return moves;
+    }
+
+    /**
+     * Return the room the player is moved to.
+     * @return The room, or null if the player stays where they are.
+     */
+    public Room getTeleport()
+    {
+        return teleport;
+    }
+
+    /**
+     * Return the number of moves the weight and moves last.
+     * @return The number of moves, or 0 if they last for the rest of the game.
+     */
+    public int getDuration()
+    {
+        return duration;
+    }
+
+    /**
+     * Return the message printed when the effect happens.
+     * @return The message, which may be empty.
+     */
+    public String getMessage()
+    {
+        return message;
+    }
+}
@@ -5,6 +5,10 @@ import java.util.Iterator;
  *
  * This class contains all the methods to allow certain command words to perform actions on the items,
  * such as removing the item from the room.
+ *
+ * Items with the same name are stacked: the list holds one Item and a count,
+ * however many of them there are. Taking or dropping any number of them
+ * therefore costs the same.
  * 
  * @author  Gunamay Sachdev
  * @version 2020.11.24
@@ -13,6 +17,10 @@ public class Items
 {
     // A map of item names to items.
     private HashMap<String, Item> items;
+    // A map of item names to how many of the item there are.
+    private HashMap<String, Integer> counts;
+    // The weight of all the items together.
+    private double totalWeight;
     
     /**
      * Create a new item list.
@@ -20,6 +28,18 @@ public class Items
     public Items()
     {
          items = new HashMap<String, Item>();
+         counts = new HashMap<String, Integer>();
+    }
+
+    /**
+     * Create a new item list holding the same items as another list.
+     * @param other The list to copy.
+     */
+    public Items(Items other)
+    {
+         items = new HashMap<String, Item>(other.items);
+         counts = new HashMap<String, Integer>(other.counts);
+         totalWeight = other.totalWeight;
     }
     
     /**
@@ -32,22 +52,78 @@ public class Items
     }
 
     /**
-     * Remove the given item.
+     * Remove one of the given item.
      * @param name The name of the item to be removed.
+     * @return The item, or null if it is not in the list.
      */
     public Item remove(String name)
     {
-        return items.remove(name);
+        return remove(name, 1);
+    }
+
+    /**
+     * Remove a number of the given item. Nothing is removed if there are
+     * fewer than that number.
+     * @param name The name of the item to be removed.
+     * @param count How many to remove.
+     * @return The item, or null if there are not enough of it in the list.
+     */
+    public Item remove(String name, int count)
+    {
+        Item item = items.get(name);
+        int have = getCount(name);
+        if(item == null || count < 1 || count > have) {
+            return null;
+        }
+        if(count == have) {
+            items.remove(name);
+            counts.remove(name);
+        }
+        else {
+            counts.put(name, have - count);
+        }
+        totalWeight -= item.getWeight() * count;
+        if(items.isEmpty()) {
+            totalWeight = 0;    // don't let rounding errors build up
+        }
+        return item;
     }
     
     /**
-     * Put the given item in the list.
+     * Put one of the given item in the list.
      * @param name The name of the item.
      * @param value The item.
      */
     public void put(String name, Item value)
     {
+        put(name, value, 1);
+    }
+
+    /**
+     * Put a number of the given item in the list, on top of any already there.
+     * @param name The name of the item.
+     * @param value The item.
+     * @param count How many to put in.
+     */
+    public void put(String name, Item value, int count)
+    {
+        if(count < 1) {
+            return;
+        }
         items.put(name, value);
+        counts.put(name, getCount(name) + count);
+        totalWeight += value.getWeight() * count;
+    }
+
+    /**
+     * Return how many of the named item are in the list.
+     * @param name The name of the item.
+     * @return The number of them, 0 if there are none.
+     */
+    public int getCount(String name)
+    {
+        Integer count = counts.get(name);
+        return count == null ? 0 : count;
     }
     
     /**
@@ -67,11 +143,17 @@ public class Items
      */
     public String getLongDescription() 
     {
-        String returnString = "";
-        for(Iterator<Item> iter = items.values().iterator(); iter.hasNext(); )
-            returnString += "  " + iter.next().getDescription();
+        StringBuilder returnString = new StringBuilder();
+        for(Iterator<Item> iter = items.values().iterator(); iter.hasNext(); ) {
+            Item item = iter.next();
+            returnString.append("  ").append(item.getDescription());
+            int count = getCount(item.getName());
+            if(count > 1) {
+                returnString.append(" (x").append(count).append(")");
+            }
+        }
         
-        return returnString;     
+        return returnString.toString();     
     }
     
     /**
@@ -81,11 +163,11 @@ public class Items
      */
     public String getShortDescription() 
     {
-        String returnString = "";
+        StringBuilder returnString = new StringBuilder();
         for(Iterator<Item> iter = items.values().iterator(); iter.hasNext(); )
-            returnString += " " + iter.next().getName();
+            returnString.append(" ").append(iter.next().getName());
         
-        return returnString;     
+        return returnString.toString();     
     }
     
     /**
@@ -94,15 +176,23 @@ public class Items
      */
     public double getTotalWeight()
     {
-        double weight = 0;
-        for(Iterator<Item> iter = items.values().iterator(); iter.hasNext(); ) {
-            weight += iter.next().getWeight();
-        }
-        return weight;        
+        return totalWeight;
+    }
+    
+    /**
+     * Return a rough estimate of the memory the list uses, in bytes: the
+     * list and its map, and one map entry for each item. The items
+     * themselves are not counted as they are shared with the house.
+     * @return The estimated size in bytes.
+     */
+    public long estimateBytes()
+    {
+        return 16 + 2 * (48 + 16) + 8 + items.size() * 80L;
     }
     
     /**
-     * Return the number of items in the list.
+     * Return the number of different items in the list. A stack of the
+     * same item counts once.
      * @return The size of the list of items.
      */
     public int getNumberOfItems(){
@@ -0,0 +1,519 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+/**
+ * Class Leaderboard - the best results of the players who escaped the beast.
+ *
+ * Results are ranked by the moves used and then by the time taken, with a
+ * separate ranking for each world. Each ranking is a balanced tree whose
+ * nodes know how many results are below them, so both the best results and
+ * the rank of a result are found by walking down the tree, in logarithmic
+ * time, instead of by counting every better result.
+ *
+ * Many games can finish at the same time, so the tree is never changed in
+ * place. Adding a result copies the few nodes on its path and then swaps
+ * in the new root in one atomic step, trying again if another game got
+ * there first. Neither adding nor reading ever takes a lock, and whoever
+ * reads the root sees one whole ranking, so the best results and the ranks
+ * always agree with each other.
+ *
+ * Every result is also added to the end of a file, and the file is read
+ * back when the leaderboard is created, so results survive a restart.
+ * Writing the file is done by a background thread that keeps the file open
+ * and writes the waiting results in batches, so a game that finishes never
+ * waits for the disk. At most MAX_WAITING results wait to be written; if
+ * more arrive, they are still ranked but not saved.
+ *
+ * @author  Gunamay Sachdev
+ * @version 2020.11.24
+ */
+public class Leaderboard
+{
+    // The most results that can wait to be written to the file.
+    private static final int MAX_WAITING = 10000;
+    // The most results written at once.
+    private static final int MAX_BATCH = 500;
+
+    // The leaderboard shared by all games.
+    private static Leaderboard defaultLeaderboard;
+
+    // The ranking of each world, by world id.
+    private ConcurrentHashMap<String, RankTree> rankings;
+    // Numbers results in the order they arrive, to tell apart equal results.
+    private AtomicLong sequence;
+    // The file results are added to, or null if they are not kept.
+    private File file;
+    // The results waiting to be written to the file.
+    private ArrayBlockingQueue<Score> waiting;
+    // The number of results that couldn't be saved because too many were waiting.
+    private AtomicLong dropped;
+    // The thread that writes results to the file.
+    private Thread writer;
+    // True once the program is ending and the writer should stop.
+    private volatile boolean closing;
+
+    /**
+     * Create a leaderboard, reading the results already in the file.
+     * @param file The file results are kept in, or null to not keep them.
+     */
+    public Leaderboard(File file)
+    {
+        rankings = new ConcurrentHashMap<String, RankTree>();
+        sequence = new AtomicLong();
+        dropped = new AtomicLong();
+        this.file = file;
+        if(file != null) {
+            replay();
+            waiting = new ArrayBlockingQueue<Score>(MAX_WAITING);
+            writer = new Thread(this::writeResults, "leaderboard-writer");
+            writer.setDaemon(true);
+            writer.start();
+            // finish writing the last results when the program ends
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                closing = true;
+                try {
+                    writer.join(5000);
+                }
+                catch(InterruptedException exc) {
+                    // give up on the results still waiting
+                }
+            }));
+        }
+    }
+
+    /**
+     * Return the leaderboard shared by all games, kept in "leaderboard.txt".
+     * @return The shared leaderboard.
+     */
+    public static synchronized Leaderboard getDefault()
+    {
+        if(defaultLeaderboard == null) {
+            defaultLeaderboard = new Leaderboard(new File("leaderboard.txt"));
+        }
+        return defaultLeaderboard;
+    }
+
+    /**
+     * Record the result of a player who escaped.
+     * @param worldId The world that was played.
+     * @param name The player's name.
+     * @param moves The moves the player used.
+     * @param millis The time the game took in milliseconds.
+     * @return The result that was recorded.
+     */
+    public Score record(String worldId, String name, int moves, long millis)
+    {
+        Score score = add(worldId, name, moves, millis);
+        if(waiting != null && !waiting.offer(score)) {
+            dropped.incrementAndGet();
+        }
+        return score;
+    }
+
+    /**
+     * Return the number of results that were not saved to the file because
+     * too many were waiting to be written.
+     * @return The number of results not saved.
+     */
+    public long getDroppedCount()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * Return the best results of a world, best first.
+     * @param worldId The world.
+     * @param count The number of results to return.
+     * @return At most count results.
+     */
+    public List<Score> getTop(String worldId, int count)
+    {
+        RankTree ranking = rankings.get(worldId);
+        return ranking == null ? new ArrayList<Score>() : ranking.getFirst(count);
+    }
+
+    /**
+     * Return the place of a result in its world's ranking, starting at 1.
+     * @param score The result.
+     * @return The rank.
+     */
+    public int getRank(Score score)
+    {
+        RankTree ranking = rankings.get(score.getWorldId());
+        return ranking == null ? 0 : ranking.countBefore(score) + 1;
+    }
+
+    /**
+     * Return a string listing the best results of a world.
+     * @param worldId The world.
+     * @param count The number of results to list.
+     * @return The list of results.
+     */
+    public String getTopString(String worldId, int count)
+    {
+        List<Score> top = getTop(worldId, count);
+        if(top.isEmpty()) {
+            return "Nobody has escaped yet.";
+        }
+        StringBuilder returnString = new StringBuilder("Best escapes:");
+        for(int i = 0; i < top.size(); i++) {
+            returnString.append("\n  ").append(i + 1).append(". ").append(top.get(i));
+        }
+        return returnString.toString();
+    }
+
+    /**
+     * Add a result to its world's ranking.
+     */
+    private Score add(String worldId, String name, int moves, long millis)
+    {
+        Score score = new Score(worldId, name, moves, millis, sequence.getAndIncrement());
+        rankings.computeIfAbsent(worldId, id -> new RankTree()).add(score);
+        return score;
+    }
+
+    /**
+     * Keep writing the waiting results to the end of the file, a batch at a
+     * time, until the program ends.
+     */
+    private void writeResults()
+    {
+        ArrayList<Score> batch = new ArrayList<Score>();
+        try(BufferedWriter out = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file, true), StandardCharsets.UTF_8))) {
+            while(!closing || !waiting.isEmpty()) {
+                Score first = waiting.poll(100, TimeUnit.MILLISECONDS);
+                if(first == null) {
+                    continue;
+                }
+                batch.add(first);
+                waiting.drainTo(batch, MAX_BATCH - 1);
+                for(Score score : batch) {
+                    out.write(escape(score.getWorldId()) + "\t" + escape(score.getName()) + "\t"
+                              + score.getMoves() + "\t" + score.getMillis());
+                    out.newLine();
+                }
+                out.flush();
+                batch.clear();
+            }
+        }
+        catch(IOException exc) {
+            System.err.println("There was an error saving the leaderboard: " + exc.getMessage());
+        }
+        catch(InterruptedException exc) {
+            // stop writing
+        }
+    }
+
+    /**
+     * Return the text with backslashes, tabs and line breaks written as
+     * \\, \t, \n and \r, so that it can't break a line of the file.
+     */
+    private static String escape(String text)
+    {
+        StringBuilder escaped = new StringBuilder(text.length());
+        for(int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if(c == '\\')
+                escaped.append("\\\\");
+            else if(c == '\t')
+                escaped.append("\\t");
+            else if(c == '\n')
+                escaped.append("\\n");
+            else if(c == '\r')
+                escaped.append("\\r");
+            else
+                escaped.append(c);
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * Undo escape().
+     */
+    private static String unescape(String text)
+    {
+        StringBuilder plain = new StringBuilder(text.length());
+        for(int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if(c == '\\' && i + 1 < text.length()) {
+                char next = text.charAt(++i);
+                if(next == 't')
+                    plain.append('\t');
+                else if(next == 'n')
+                    plain.append('\n');
+                else if(next == 'r')
+                    plain.append('\r');
+                else
+                    plain.append(next);
+            }
+            else {
+                plain.append(c);
+            }
+        }
+        return plain.toString();
+    }
+
+    /**
+     * Read the results that are already in the file.
+     */
+    private void replay()
+    {
+        if(!file.exists()) {
+            return;
+        }
+        try(BufferedReader reader = new BufferedReader(new InputStreamReader(
+                new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t");
+                if(fields.length == 4) {
+                    try {
+                        add(unescape(fields[0]), unescape(fields[1]),
+                            Integer.parseInt(fields[2]), Long.parseLong(fields[3]));
+                    }
+                    catch(NumberFormatException exc) {
+                        // skip a damaged line, for example one cut short by a crash
+                    }
+                }
+            }
+        }
+        catch(IOException exc) {
+            System.err.println("There was an error reading the leaderboard: " + exc.getMessage());
+        }
+    }
+
+    /**
+     * The results of one world in a randomly balanced binary search tree (a
+     * treap). Each node knows the size of its subtree, so the number of
+     * results before a given one is found by walking down a single path.
+     * Nodes never change: adding a result builds new nodes along its path
+     * and swaps in the new root.
+     */
+    private static class RankTree
+    {
+        private AtomicReference<Node> root = new AtomicReference<Node>();
+
+        /**
+         * Add a result to the tree, trying again if another result was
+         * added at the same time.
+         */
+        public void add(Score score)
+        {
+            int priority = ThreadLocalRandom.current().nextInt();
+            Node tree;
+            do {
+                tree = root.get();
+            } while(!root.compareAndSet(tree, insert(tree, score, priority)));
+        }
+
+        /**
+         * Return the number of results that rank before the given one.
+         */
+        public int countBefore(Score score)
+        {
+            int count = 0;
+            Node node = root.get();
+            while(node != null) {
+                if(score.compareTo(node.score) <= 0) {
+                    node = node.left;
+                }
+                else {
+                    count += size(node.left) + 1;
+                    node = node.right;
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Return the first results, best first.
+         */
+        public List<Score> getFirst(int count)
+        {
+            ArrayList<Score> first = new ArrayList<Score>();
+            ArrayDeque<Node> above = new ArrayDeque<Node>();
+            Node node = root.get();
+            while((node != null || !above.isEmpty()) && first.size() < count) {
+                if(node != null) {
+                    above.push(node);
+                    node = node.left;
+                }
+                else {
+                    node = above.pop();
+                    first.add(node.score);
+                    node = node.right;
+                }
+            }
+            return first;
+        }
+
+        /**
+         * Return a subtree with the result inserted, keeping the higher
+         * priorities on top. The given subtree isn't changed.
+         */
+        private static Node insert(Node tree, Score score, int priority)
+        {
+            if(tree == null) {
+                return new Node(score, priority, null, null);
+            }
+            if(priority > tree.priority) {
+                Node[] parts = split(tree, score);
+                return new Node(score, priority, parts[0], parts[1]);
+            }
+            if(score.compareTo(tree.score) < 0) {
+                return new Node(tree.score, tree.priority, insert(tree.left, score, priority), tree.right);
+            }
+            return new Node(tree.score, tree.priority, tree.left, insert(tree.right, score, priority));
+        }
+
+        /**
+         * Split a subtree into the results before the given one and the
+         * rest. The given subtree isn't changed.
+         */
+        private static Node[] split(Node tree, Score score)
+        {
+            if(tree == null) {
+                return new Node[2];
+            }
+            Node[] parts;
+            if(tree.score.compareTo(score) < 0) {
+                parts = split(tree.right, score);
+                parts[0] = new Node(tree.score, tree.priority, tree.left, parts[0]);
+            }
+            else {
+                parts = split(tree.left, score);
+                parts[1] = new Node(tree.score, tree.priority, parts[1], tree.right);
+            }
+            return parts;
+        }
+
+        private static int size(Node node)
+        {
+            return node == null ? 0 : node.size;
+        }
+
+        /**
+         * A node of the tree.
+         */
+        private static class Node
+        {
+            private final Score score;
+            private final int priority;
+            private final int size;
+            private final Node left;
+            private final Node right;
+
+            private Node(Score score, int priority, Node left, Node right)
+            {
+                this.score = score;
+                this.priority = priority;
+                this.left = left;
+                this.right = right;
+                size = size(left) + 1 + size(right);
+            }
+        }
+    }
+
+    /**
+     * One player's result. Fewer moves rank higher, then less time.
+     */
+    public static class Score implements Comparable<Score>
+    {
+        private String worldId;
+        private String name;
+        private int moves;
+        private long millis;
+        private long sequence;
+
+        /**
+         * Create a result. The sequence number tells apart results that
+         * are otherwise equal, the earlier one ranking higher.
+         */
+        private Score(String worldId, String name, int moves, long millis, long sequence)
+        {
+            this.worldId = worldId;
+            this.name = name;
+            this.moves = moves;
+            this.millis = millis;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Return the world that was played.
+         * @return The world's id.
+         */
+        public String getWorldId()
+        {
+            return worldId;
+        }
+
+        /**
+         * Return the name of the player.
+         * @return The player's name.
+         */
+        public String getName()
+        {
+            return name;
+        }
+
+        /**
+         * Return the moves the player used.
+         * @return The number of moves.
+         */
+        public int getMoves()
+        {
+            return moves;
+        }
+
+        /**
+         * Return the time the game took.
+         * @return The time in milliseconds.
+         */
+        public long getMillis()
+        {
+            return millis;
+        }
+
+        /**
+         * Compare this result with another: fewer moves first, then less
+         * time, then the one recorded first.
+         * @param other The other result.
+         * @return Less than 0 if this result ranks higher, more than 0 if it ranks lower.
+         */
+        public int compareTo(Score other)
+        {
+            if(moves != other.moves) {
+                return Integer.compare(moves, other.moves);
+            }
+            if(millis != other.millis) {
+                return Long.compare(millis, other.millis);
+            }
+            return Long.compare(sequence, other.sequence);
+        }
+
+        /**
+         * Return the result as it is shown in the list of best escapes.
+         * @return For example "Anna - 12 moves, 40 seconds".
+         */
+        public String toString()
+        {
+            return name + " - " + moves + " moves, " + (millis / 1000) + " seconds";
+        }
+    }
+}
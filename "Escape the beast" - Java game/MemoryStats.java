@@ -0,0 +1,161 @@
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+import java.util.WeakHashMap;
+import javax.management.JMException;
+import javax.management.ObjectName;
+/**
+ * Class MemoryStats - how much memory the running games use.
+ *
+ * Every game registers here when it is created and unregisters when it
+ * ends. The figures are estimates that each game keeps up to date as it is
+ * played, so asking for them never has to walk through the memory of the
+ * games, and they can be asked for from any thread. A game that is never
+ * played is forgotten once nothing else refers to it.
+ *
+ * The figures for all games are shown by the "memstats" command and are
+ * also available through JMX.
+ *
+ * @author  Gunamay Sachdev
+ * @version 2020.11.24
+ */
+public class MemoryStats implements MemoryStatsMXBean
+{
+    // The statistics shared by all games.
+    private static MemoryStats defaultStats;
+
+    // The games that are running.
+    private Set<Game> games;
+
+    /**
+     * Create the statistics, with no games yet.
+     */
+    public MemoryStats()
+    {
+        games = Collections.synchronizedSet(Collections.newSetFromMap(new WeakHashMap<Game, Boolean>()));
+    }
+
+    /**
+     * Return the statistics shared by all games, registering them with JMX
+     * the first time.
+     * @return The shared statistics.
+     */
+    public static synchronized MemoryStats getDefault()
+    {
+        if(defaultStats == null) {
+            defaultStats = new MemoryStats();
+            try {
+                ManagementFactory.getPlatformMBeanServer().registerMBean(
+                    defaultStats, new ObjectName("EscapeTheBeast:type=MemoryStats"));
+            }
+            catch(JMException exc) {
+                System.err.println("The memory statistics are not available through JMX: " + exc.getMessage());
+            }
+        }
+        return defaultStats;
+    }
+
+    /**
+     * Add a game to the statistics.
+     * @param game The game.
+     */
+    public void register(Game game)
+    {
+        games.add(game);
+    }
+
+    /**
+     * Remove a game from the statistics, once it has ended.
+     * @param game The game.
+     */
+    public void unregister(Game game)
+    {
+        games.remove(game);
+    }
+
+    /**
+     * Return the estimated sizes of all games, smallest first.
+     * @return The sizes in bytes.
+     */
+    public long[] getSizes()
+    {
+        ArrayList<Game> running;
+        synchronized(games) {
+            running = new ArrayList<Game>(games);
+        }
+        long[] sizes = new long[running.size()];
+        for(int i = 0; i < sizes.length; i++) {
+            sizes[i] = running.get(i).estimateBytes();
+        }
+        Arrays.sort(sizes);
+        return sizes;
+    }
+
+    /**
+     * Return a description of the sizes of all games.
+     * @return The description.
+     */
+    public String getSummary()
+    {
+        long[] sizes = getSizes();
+        return "All games: " + sizes.length + " running, " + sum(sizes) + " bytes in total"
+            + "\n  smallest " + percentile(sizes, 0) + ", median " + percentile(sizes, 50)
+            + ", 90% " + percentile(sizes, 90) + ", biggest " + percentile(sizes, 100) + " bytes";
+    }
+
+    public int getGameCount()
+    {
+        return games.size();
+    }
+
+    public long getTotalBytes()
+    {
+        return sum(getSizes());
+    }
+
+    public long getMinBytes()
+    {
+        return percentile(getSizes(), 0);
+    }
+
+    public long getMedianBytes()
+    {
+        return percentile(getSizes(), 50);
+    }
+
+    public long getPercentile90Bytes()
+    {
+        return percentile(getSizes(), 90);
+    }
+
+    public long getMaxBytes()
+    {
+        return percentile(getSizes(), 100);
+    }
+
+    /**
+     * Return the total of the sizes.
+     */
+    private static long sum(long[] sizes)
+    {
+        long total = 0;
+        for(long size : sizes) {
+            total += size;
+        }
+        return total;
+    }
+
+    /**
+     * Return the size that the given percentage of the sorted sizes are at most.
+     */
+    private static long percentile(long[] sizes, int percent)
+    {
+        if(sizes.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percent / 100.0 * sizes.length) - 1;
+        return sizes[Math.max(0, Math.min(index, sizes.length - 1))];
+    }
+}
@@ -0,0 +1,39 @@
+/**
+ * The memory figures of all running games, as seen through JMX, for
+ * example in JConsole under "EscapeTheBeast:type=MemoryStats".
+ *
+ * @author  Gunamay Sachdev
+ * @version 2020.11.24
+ */
+public interface MemoryStatsMXBean
+{
+    /**
+     * Return the number of games that are running.
+     */
+    int getGameCount();
+
+    /**
+     * Return the estimated memory used by all games together, in bytes.
+     */
+    long getTotalBytes();
+
+    /**
+     * Return the estimated memory used by the smallest game, in bytes.
+     */
+    long getMinBytes();
+
+    /**
+     * Return the estimated memory used by the middle game, in bytes.
+     */
+    long getMedianBytes();
+
+    /**
+     * Return the estimated memory used by the biggest game but one in ten, in bytes.
+     */
+    long getPercentile90Bytes();
+
+    /**
+     * Return the estimated memory used by the biggest game, in bytes.
+     */
+    long getMaxBytes();
+}
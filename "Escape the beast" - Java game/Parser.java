@@ -1,14 +1,14 @@
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
-import java.util.StringTokenizer;
 /**
  * This class is part of the "World of Zuul" application. 
  * "Escape the beast" is a very simple, text based adventure game.  
  *
  * This parser reads user input and tries to interpret it as an "Adventure"
  * command. Every time it is called it reads a line from the terminal and
- * tries to interpret the line as a two word command. It returns the command
- * as an object of class Command.
+ * interprets it with the Grammar, which knows synonyms, articles and
+ * prepositions, so "pick up the key" is the same as "take key". It returns
+ * the command as an object of class Command.
  *
  * The parser has a set of known command words. It checks user input against
  * the known commands, and if the input is not one of the known commands, it
@@ -22,22 +22,22 @@ public class Parser
 {
 
     private CommandWords commands;  // holds all valid command words
+    private Grammar grammar;        // turns a line into a command
+    private BufferedReader reader;  // the terminal
 
     public Parser() 
     {
         commands = new CommandWords();
+        grammar = Grammar.getDefault();
+        reader = new BufferedReader(new InputStreamReader(System.in));
     }
 
     public Command getCommand() 
     {
         String inputLine = "";   // will hold the full input line
-        String word1;
-        String word2;
 
         System.out.print("> ");     // print prompt
 
-        BufferedReader reader = 
-            new BufferedReader(new InputStreamReader(System.in));
         try {
             inputLine = reader.readLine();
         }
@@ -46,26 +46,26 @@ public class Parser
                                 + exc.getMessage());
         }
 
-        StringTokenizer tokenizer = new StringTokenizer(inputLine);
-
-        if(tokenizer.hasMoreTokens())
-            word1 = tokenizer.nextToken();      // get first word
-        else
-            word1 = null;
-        if(tokenizer.hasMoreTokens())
-            word2 = tokenizer.nextToken();      // get second word
-        else
-            word2 = null;
-
-        // note: we just ignore the rest of the input line.
+        if(inputLine == null) {
+            // the input has ended, so nothing more can be typed
+            return new Command("quit", null);
+        }
 
-        // Now check whether this word is known. If so, create a command
-        // with it. If not, create a "null" command (for unknown command).
+        // Let the grammar find the command word, the second word, a number
+        // and a place in the line. Words that aren't known are passed on as
+        // they are. If the line doesn't start with a known command word,
+        // the result is a "null" command (for unknown command).
+        return grammar.parse(inputLine);
+    }
 
-        if(commands.isCommand(word1))
-            return new Command(word1, word2);
-        else
-            return new Command(null, word2);
+    /**
+     * Return a rough estimate of the memory the parser uses, in bytes.
+     * The command words and the grammar are shared by all parsers and not
+     * counted. Most of it is the reader's buffer of 8192 characters.
+     */
+    public long estimateBytes()
+    {
+        return 24 + 16 + 64 + 8192 * 2;
     }
 
     /**
@@ -75,4 +75,12 @@ public class Parser
     {
         commands.showAll();
     }
+
+    /**
+     * Return a list of all the valid command words.
+     */
+    public String getCommandString()
+    {
+        return commands.getCommandString();
+    }
 }
@@ -1,8 +1,21 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 /**
  * This is the representation of a player in the game Escape the beast.
  * 
  * It holds all the information and methods about the player in this class such as the items
  * is carrying and the number of moves the player has performed.
+ *
+ * Players in the same room can see each other. They are told when someone
+ * comes in or leaves, and can say something to everyone in the room. What
+ * they are told waits in their inbox until their game shows it. Telling the
+ * room only costs as much as there are players in it. In a crowded room
+ * nobody is told about every player coming and going, and only a few of
+ * the players there are named.
  * 
  * @author  Gunamay Sachdev
  * @version 2020.11.24
@@ -10,20 +23,47 @@
 
 public class Player
 {
+    // The number of changes that can be undone, unless another number is given.
+    public static final int DEFAULT_HISTORY = 100;
+    // The most messages kept for a player who isn't reading them.
+    private static final int MAX_INBOX = 100;
+    // In a room with more players than this, coming and going isn't announced.
+    private static final int MAX_NOTICES = 50;
+    // The most other players named when describing a room.
+    private static final int MAX_NAMED = 10;
+
     // The player's name.
     private String name;
     // The room the player is in.
     private Room currentRoom;
+    // Where the items lying in the rooms are in this game.
+    private RoomItems roomItems;
     // The item's the player is holding.
     private Items items = new Items();
-    // The maximum weight the player can hold.
+    // The maximum weight the player can hold, without the effects that only last a while.
     private double maxWeight;
     // The number of moves the player has used.
     private int moves = 0;
-    // The limit of moves the player has.
+    // The limit of moves the player has, without the effects that only last a while.
     private int maxMoves = 15;
+    // The effects of used items that only last a while, oldest first.
+    private ArrayList<Buff> buffs = new ArrayList<Buff>();
     // The previous room the player was in prior to moving into a new room
     private Room lastRoom;
+    // The changes the player made, newest first, so that they can be undone.
+    private ArrayDeque<Change> history = new ArrayDeque<Change>();
+    // The number of changes that are kept in the history.
+    private int maxHistory;
+    // The ids of the rooms the player has been in.
+    private BitSet visited = new BitSet();
+    // The messages from other players waiting to be shown.
+    private ConcurrentLinkedQueue<String> inbox = new ConcurrentLinkedQueue<String>();
+    // The number of messages in the inbox.
+    private AtomicInteger inboxSize = new AtomicInteger();
+    // The record of what happens, shared with every other player.
+    private EventLog events = EventLog.getDefault();
+    // The number that tells this player's events apart from the others'.
+    private int session = events.newSession();
     
     /**
      * Constructor for objects of class Player
@@ -31,11 +71,37 @@ public class Player
      * @param start The room the player is in
      */
     public Player(String name, Room start)
+    {
+        this(name, start, DEFAULT_HISTORY);
+    }
+
+    /**
+     * Constructor for objects of class Player
+     * @param name The player's name
+     * @param start The room the player is in
+     * @param maxHistory The number of changes that can be undone
+     */
+    public Player(String name, Room start, int maxHistory)
+    {
+        this(name, start, new RoomItems(), maxHistory);
+    }
+
+    /**
+     * Constructor for objects of class Player
+     * @param name The player's name
+     * @param start The room the player is in
+     * @param roomItems Where the items lying in the rooms are in this game
+     * @param maxHistory The number of changes that can be undone
+     */
+    public Player(String name, Room start, RoomItems roomItems, int maxHistory)
     {
         this.name = name;
+        this.roomItems = roomItems;
+        this.maxHistory = maxHistory;
         this.maxWeight = 1.0;//Sets the maximum weight a player can carry to 1.0
         this.currentRoom = start;
         this.lastRoom = start;
+        visited.set(start.getId());
     }
 
     /**
@@ -45,10 +111,197 @@ public class Player
     public void enterRoom(Room room)
     {
         moves++; // increments the number of moves the player has performed when moving into a new room
+        remember(new Change(Change.MOVE, currentRoom, lastRoom, null));
         lastRoom = currentRoom; // sets the current room as the last room
-        currentRoom = room;// sets the new room that the player is to enter into as the current room
+        moveTo(room);// sets the new room that the player is to enter into as the current room
+        visited.set(room.getId());
+        updateBuffs();
+    }
+
+    /**
+     * Tell the player about the effects that have just worn off, and forget
+     * the ones that undo can no longer bring back.
+     */
+    private void updateBuffs()
+    {
+        // undo can't take the moves back further than the history goes
+        int oldest = moves - history.size();
+        for(int i = buffs.size() - 1; i >= 0; i--) {
+            Buff buff = buffs.get(i);
+            if(buff.end == moves) {
+                tell("The effect of the " + buff.item.getName() + " has worn off.");
+            }
+            if(buff.end <= oldest) {
+                buffs.remove(i);
+            }
+        }
+    }
+
+    /**
+     * Leave the house at the end of the game, so that the other players no
+     * longer see this player.
+     */
+    public void leaveHouse()
+    {
+        if(currentRoom.removeOccupant(this)) {
+            announce(currentRoom, name + " has left the house.");
+        }
+    }
+
+    /**
+     * Come back into the house after leaving it, in the room the player
+     * was in.
+     */
+    public void returnToHouse()
+    {
+        if(currentRoom.addOccupant(this)) {
+            announce(currentRoom, name + " came in.");
+        }
+    }
+
+    /**
+     * Put back the state of a player that was saved, for example in a
+     * SessionSlab. The player must be new: nothing carried, nothing to undo.
+     * @param lastRoom The room the player was in before the current one.
+     * @param moves The number of moves used.
+     * @param maxMoves The limit of moves.
+     * @param maxWeight The maximum weight the player can hold.
+     */
+    public void restore(Room lastRoom, int moves, int maxMoves, double maxWeight)
+    {
+        this.lastRoom = lastRoom;
+        this.moves = moves;
+        this.maxMoves = maxMoves;
+        this.maxWeight = maxWeight;
+    }
+
+    /**
+     * Give the player a number of an item to carry, without taking it from
+     * a room. Used when a saved player is put back.
+     * @param item The item.
+     * @param count How many of it.
+     */
+    public void carry(Item item, int count)
+    {
+        items.put(item.getName(), item, count);
+    }
+
+    /**
+     * Move into a room, telling the players in the room left and the room
+     * entered. Every change of room goes through here, whether it is a
+     * move, a teleport or an undo, so this is where it is logged.
+     */
+    private void moveTo(Room room)
+    {
+        events.publish(session, EventLog.ENTER, room, null, moves);
+        if(room != currentRoom && currentRoom.removeOccupant(this)) {
+            announce(currentRoom, name + " left.");
+        }
+        currentRoom = room;
+        if(room.addOccupant(this)) {
+            announce(room, name + " came in.");
+        }
+    }
+
+    /**
+     * Tell the other players in a room about this player coming or going,
+     * unless the room is too crowded for anyone to notice.
+     */
+    private void announce(Room room, String message)
+    {
+        if(room.getOccupantCount() <= MAX_NOTICES) {
+            tellRoom(room, message);
+        }
+    }
+
+    /**
+     * Tell every other player in a room something.
+     * @return The number of players told.
+     */
+    private int tellRoom(Room room, String message)
+    {
+        int told = 0;
+        for(Player other : room.getOccupants()) {
+            if(other != this && other.tell(message)) {
+                told++;
+            }
+        }
+        return told;
+    }
+
+    /**
+     * Say something to the other players in the room.
+     * @param text What to say.
+     * @return The number of players who heard it.
+     */
+    public int say(String text)
+    {
+        return tellRoom(currentRoom, name + " says: " + text);
+    }
+
+    /**
+     * Give the player a message, unless their inbox is full.
+     * @param message The message.
+     * @return true if the message was put in the inbox.
+     */
+    public boolean tell(String message)
+    {
+        if(inboxSize.incrementAndGet() > MAX_INBOX) {
+            inboxSize.decrementAndGet();
+            return false;
+        }
+        inbox.offer(message);
+        return true;
+    }
+
+    /**
+     * Take the oldest message out of the player's inbox.
+     * @return The message, or null if there are none.
+     */
+    public String nextMessage()
+    {
+        String message = inbox.poll();
+        if(message != null) {
+            inboxSize.decrementAndGet();
+        }
+        return message;
+    }
+
+    /**
+     * Returns a string naming the other players in the current room, for
+     * example "Also here: Anna, Ben and 3 other(s)". Only a few are named.
+     * @return The description, or null if the player is alone.
+     */
+    public String getOthersString()
+    {
+        int others = currentRoom.getOccupantCount() - (currentRoom.getOccupants().contains(this) ? 1 : 0);
+        if(others <= 0) {
+            return null;
+        }
+        StringBuilder returnString = new StringBuilder("Also here:");
+        int named = 0;
+        for(Iterator<Player> iter = currentRoom.getOccupants().iterator(); iter.hasNext() && named < MAX_NAMED; ) {
+            Player other = iter.next();
+            if(other != this) {
+                returnString.append(named == 0 ? " " : ", ").append(other.getName());
+                named++;
+            }
+        }
+        if(others > named) {
+            returnString.append(" and ").append(others - named).append(" other(s)");
+        }
+        return returnString.toString();
     }
     
+    /**
+     * Gets the number that tells this player's events apart in the event log.
+     * @return The session number.
+     */
+    public int getSession()
+    {
+        return session;
+    }
+
     /**
      * Gets the room in which the player is currently located.
      * @return The current room.
@@ -67,6 +320,15 @@ public class Player
         return lastRoom;
     }
     
+    /**
+     * Gets the rooms the player has been in.
+     * @return The ids of the visited rooms.
+     */
+    public BitSet getVisitedRooms()
+    {
+        return visited;
+    }
+    
     /**
      * Get the name of the player.
      * @return The player's name
@@ -85,6 +347,49 @@ public class Player
         return "You are carrying: " + items.getLongDescription();
     }
     
+    /**
+     * Returns a string describing the players current location, the
+     * items lying in it and who else is there.
+     * @return A description of the room.
+     */
+    public String getRoomDescription()
+    {
+        String others = getOthersString();
+        if(others == null) {
+            return roomItems.getLongDescription(currentRoom);
+        }
+        return roomItems.getLongDescription(currentRoom) + "\n" + others;
+    }
+    
+    /**
+     * Prints the players current location, the items lying in it and who
+     * else is there, followed by a new line. The fixed part of the room's
+     * description is added as it was encoded once, not encoded again.
+     * @param out The response to print to.
+     */
+    public void printRoomDescription(Response out)
+    {
+        out.print(currentRoom.getEncodedDescription());
+        out.print(roomItems.getItems(currentRoom).getLongDescription());
+        String others = getOthersString();
+        if(others != null) {
+            out.println();
+            out.print(others);
+        }
+        out.println();
+    }
+
+    /**
+     * Prints the players current location and which items the player
+     * carries, followed by a new line.
+     * @param out The response to print to.
+     */
+    public void printLongDescription(Response out)
+    {
+        printRoomDescription(out);
+        out.println(getItemsString());
+    }
+
     /**
      * Returns a string describing the players current location and which
      * items the player carries.
@@ -92,7 +397,7 @@ public class Player
      */
     public String getLongDescription()
     {       
-        String returnString = currentRoom.getLongDescription();
+        String returnString = getRoomDescription();
         returnString += "\n" + getItemsString();
         return returnString;
     }
@@ -101,18 +406,19 @@ public class Player
      * Checks if we can pick up the given item. This depends on whether the item 
      * actually is in the current room and if it is not too heavy.
      * @parem itemName The item to be picked up.
+     * @param count How many of the item to pick up.
      * @return true if the item can be picked up, false otherwise.
      */
-    private boolean canPickItem(String itemName)
+    private boolean canPickItem(String itemName, int count)
     {
         boolean canPick = true;
-        Item item = currentRoom.getItem(itemName);// gets the items in the current room
-        if(item == null) {
+        Item item = roomItems.get(currentRoom, itemName);// gets the items in the current room
+        if(item == null || count < 1 || roomItems.getCount(currentRoom, itemName) < count) {
             canPick = false;
         }
         else {
-            double totalWeight = items.getTotalWeight() + item.getWeight();
-            if(totalWeight > maxWeight) {
+            double totalWeight = items.getTotalWeight() + item.getWeight() * count;
+            if(totalWeight > getMaxWeight()) {
                 canPick = false;
             }
         }
@@ -127,9 +433,21 @@ public class Player
      */
     public Item pickUpItem(String itemName)
     {
-        if(canPickItem(itemName)) {
-            Item item = currentRoom.removeItem(itemName);
-            items.put(itemName, item);            
+        return pickUpItem(itemName, 1);
+    }
+
+    /**
+     * Tries to pick up a number of the same item from the current room.
+     * @param itemName The item to be picked up.
+     * @param count How many of the item to pick up.
+     * @return If successful, this method will return the item that was picked up.
+     */
+    public Item pickUpItem(String itemName, int count)
+    {
+        if(canPickItem(itemName, count)) {
+            Item item = roomItems.remove(currentRoom, itemName, count);
+            items.put(itemName, item, count);            
+            remember(new Change(Change.TAKE, currentRoom, null, item, count));
             return item;
         } 
         else {
@@ -146,38 +464,264 @@ public class Player
      */
     public Item dropItem(String itemName)
     {
-        Item item = items.remove(itemName);
+        return dropItem(itemName, 1);
+    }
+
+    /**
+     * Tries to drop a number of the same item into the current room.
+     * @param itemName The item to be dropped.
+     * @param count How many of the item to drop.
+     * 
+     * @return If successful this method will return the item that was dropped.
+     */
+    public Item dropItem(String itemName, int count)
+    {
+        Item item = items.remove(itemName, count);
         if(item != null) {
-            currentRoom.addItem(item);            
+            roomItems.add(currentRoom, item, count);            
+            remember(new Change(Change.DROP, currentRoom, null, item, count));
         }
         return item;
     }
     
     /**
      * Eats the item if possible.
-     * Only apples can be eaten.
+     * Only items with an effect for "eat" can be eaten.
      * @param itemName The item to be eaten.
+     * @return The item that was eaten, or null.
      */
     public Item eat(String itemName)
     {
-        if(itemName.equals("apple")) {
-            //First see if we have a apple in our inventory
-            Item apple = items.get(itemName);
-            //Then check if there is a apple in the room
-            if(apple == null) { 
-                apple = currentRoom.removeItem(itemName);
+        return use(ItemEffect.EAT, itemName);
+    }
+
+    /**
+     * Uses an item from the inventory or the current room, if it has an
+     * effect for the given verb. An item used from the room is used up,
+     * an item from the inventory is kept. If the effect has a duration, the
+     * weight and moves it gives only last for that many moves.
+     * @param verb The number of the verb, for example ItemEffect.EAT.
+     * @param itemName The item to be used.
+     * @return The item that was used, or null.
+     */
+    public Item use(int verb, String itemName)
+    {
+        //First see if we have the item in our inventory
+        Item item = items.get(itemName);
+        Room from = null;
+        //Then check if it is in the room
+        if(item == null) { 
+            item = roomItems.get(currentRoom, itemName);
+            from = currentRoom;
+        }
+        if(item == null || item.getEffect(verb) == null) {
+            return null;
+        }
+        if(from != null) {
+            roomItems.remove(from, itemName);
+        }
+        ItemEffect effect = item.getEffect(verb);
+        remember(new Change(from, item, effect));
+        if(effect.getDuration() > 0) {
+            buffs.add(new Buff(item, effect, moves + effect.getDuration()));
+        }
+        else {
+            maxWeight += effect.getWeight();
+            maxMoves += effect.getMoves();
+        }
+        if(effect.getTeleport() != null) {
+            enterRoom(effect.getTeleport());
+        }
+        return item;
+    }
+        
+    /**
+     * Undoes the player's most recent changes: moves, items taken, dropped
+     * or used. Undoing a move gives the move back.
+     * @param steps The number of changes to undo.
+     * @return The number of changes that were undone, which is less than
+     * steps if the history runs out.
+     */
+    public int undo(int steps)
+    {
+        int undone = 0;
+        while(undone < steps && !history.isEmpty()) {
+            Change change = history.pop();
+            Item item = change.getItem();
+            switch(change.getKind()) {
+                case Change.MOVE:
+                    moves--;
+                    moveTo(change.getRoom());
+                    lastRoom = change.getLastRoom();
+                    break;
+                case Change.TAKE:
+                    items.remove(item.getName(), change.getCount());
+                    roomItems.add(change.getRoom(), item, change.getCount());
+                    break;
+                case Change.DROP:
+                    roomItems.remove(change.getRoom(), item.getName(), change.getCount());
+                    items.put(item.getName(), item, change.getCount());
+                    break;
+                case Change.USE:
+                    // a teleport was a move of its own, undone before this
+                    ItemEffect effect = change.getEffect();
+                    if(effect.getDuration() > 0) {
+                        removeBuff(effect);
+                    }
+                    else {
+                        maxWeight -= effect.getWeight();
+                        maxMoves -= effect.getMoves();
+                    }
+                    if(change.getRoom() != null) {
+                        roomItems.add(change.getRoom(), item);
+                    }
+                    break;
             }
-            if(apple != null) {
-                maxWeight += 1;
-                System.out.println("The weight limit of the items you can carry has doubled!");
-                System.out.println("You can now drop your magic apple and find the rest of the items!");
-                System.out.println("Hurry! The beast is close to you!");
-                return apple;    
+            undone++;
+        }
+        return undone;
+    }
+
+    /**
+     * Forgets the newest use of an effect that only lasts a while.
+     */
+    private void removeBuff(ItemEffect effect)
+    {
+        for(int i = buffs.size() - 1; i >= 0; i--) {
+            if(buffs.get(i).effect == effect) {
+                buffs.remove(i);
+                return;
             }
         }
-        return null;
     }
-        
+
+    /**
+     * Returns the number of changes that can still be undone.
+     * @return The size of the history.
+     */
+    public int getHistorySize()
+    {
+        return history.size();
+    }
+
+    /**
+     * Forgets all changes, so that none of them can be undone.
+     */
+    public void clearHistory()
+    {
+        history.clear();
+    }
+
+    /**
+     * Adds a change to the history, forgetting the oldest one if the
+     * history is full.
+     * @param change The change to remember.
+     */
+    private void remember(Change change)
+    {
+        if(maxHistory <= 0) {
+            return;
+        }
+        if(history.size() == maxHistory) {
+            history.removeLast();
+        }
+        history.push(change);
+    }
+
+    /**
+     * Returns the number of moves the player has used.
+     * @return The moves used.
+     */
+    public int getMoves()
+    {
+        return moves;
+    }
+
+    /**
+     * Returns the number of moves the player may use before the beast comes,
+     * with the effects that only last a while.
+     * @return The limit of moves.
+     */
+    public int getMaxMoves()
+    {
+        int limit = maxMoves;
+        for(Buff buff : buffs) {
+            if(moves < buff.end) {
+                limit += buff.effect.getMoves();
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Returns the maximum weight the player can hold, with the effects that
+     * only last a while.
+     * @return The weight limit.
+     */
+    public double getMaxWeight()
+    {
+        double limit = maxWeight;
+        for(Buff buff : buffs) {
+            if(moves < buff.end) {
+                limit += buff.effect.getWeight();
+            }
+        }
+        return limit;
+    }
+
+    /**
+     * Returns the number of moves the player may use before the beast comes,
+     * leaving out the effects that only last a while.
+     * @return The lasting limit of moves.
+     */
+    public int getBaseMaxMoves()
+    {
+        return maxMoves;
+    }
+
+    /**
+     * Returns the maximum weight the player can hold, leaving out the
+     * effects that only last a while.
+     * @return The lasting weight limit.
+     */
+    public double getBaseMaxWeight()
+    {
+        return maxWeight;
+    }
+
+    /**
+     * Returns the items the player carries. The result must not be changed.
+     * @return The items carried.
+     */
+    public Items getItems()
+    {
+        return items;
+    }
+
+    /**
+     * Returns the weight the player can carry on top of what they carry now.
+     * @return The weight left.
+     */
+    public double getWeightLeft()
+    {
+        return getMaxWeight() - items.getTotalWeight();
+    }
+
+    /**
+     * Return a rough estimate of the memory the player uses, in bytes: the
+     * player, the items carried, the undo history and the visited rooms.
+     * It doesn't look at the items or rooms, so it is cheap to work out.
+     * @return The estimated size in bytes.
+     */
+    public long estimateBytes()
+    {
+        return 64 + items.estimateBytes()
+            + 32 + history.size() * (long) Change.BYTES
+            + 40 + visited.size() / 8
+            + 40 + buffs.size() * 32L
+            + 64 + inboxSize.get() * 64L;
+    }
+
     /**
      * Checks if the player is dead. 
      * The player dies when he has exceeded some number of moves.
@@ -185,7 +729,7 @@ public class Player
      */
     public boolean isDead() 
     {
-        return moves > maxMoves;
+        return moves > getMaxMoves();
     }
     
     /**
@@ -196,4 +740,26 @@ public class Player
         return items.getNumberOfItems();
     }
 
-}
\ No newline at end of file
+    /**
+     * An effect of a used item that only lasts until a certain move.
+     */
+    private static class Buff
+    {
+        // The item that was used.
+        private Item item;
+        // What using it did.
+        private ItemEffect effect;
+        // The number of moves at which the effect wears off.
+        private int end;
+
+        /**
+         * Create an effect that wears off when the player has used the given number of moves.
+         */
+        private Buff(Item item, ItemEffect effect, int end)
+        {
+            this.item = item;
+            this.effect = effect;
+            this.end = end;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+/**
+ * Class Response - the output the game produces for one command.
+ *
+ * Text that never changes (the welcome message, the help text etc.) is
+ * encoded into bytes once with encode() and can be added to a response
+ * without being built or encoded again. Only the small changing parts are
+ * encoded when they are printed. The finished response is taken out as
+ * one array of bytes, which is written out in a single call and can be
+ * shared with everyone watching the game.
+ *
+ * @author  Gunamay Sachdev
+ * @version 2020.11.24
+ */
+public class Response
+{
+    // The line separator, already encoded.
+    private static final byte[] NEWLINE = encode("\n");
+
+    // The encoded bytes of the response so far.
+    private ByteArrayOutputStream buffer;
+
+    /**
+     * Create a new, empty response.
+     */
+    public Response()
+    {
+        buffer = new ByteArrayOutputStream(256);
+    }
+
+    /**
+     * Encode some fixed text so that it can be printed again and again
+     * without being encoded each time. Text is always encoded as UTF-8.
+     * @param text The text to encode.
+     * @return The encoded text.
+     */
+    public static byte[] encode(String text)
+    {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Add some text that was encoded in advance.
+     * @param fragment The encoded text.
+     */
+    public void print(byte[] fragment)
+    {
+        buffer.write(fragment, 0, fragment.length);
+    }
+
+    /**
+     * Add some text to the response.
+     * @param text The text to add.
+     */
+    public void print(String text)
+    {
+        print(encode(text));
+    }
+
+    /**
+     * Add some text followed by a new line to the response.
+     * @param text The text to add.
+     */
+    public void println(String text)
+    {
+        print(text);
+        print(NEWLINE);
+    }
+
+    /**
+     * Add an empty line to the response.
+     */
+    public void println()
+    {
+        print(NEWLINE);
+    }
+
+    /**
+     * Return the encoded response and start a new, empty response.
+     * @return The bytes of the response.
+     */
+    public byte[] take()
+    {
+        byte[] bytes = buffer.toByteArray();
+        buffer.reset();
+        return bytes;
+    }
+}
@@ -2,6 +2,8 @@ import java.util.Set;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 /**
  * Class Room - a room in an adventure game.
  *
@@ -11,6 +13,10 @@ import java.util.Iterator;
  * A "Room" represents one location in the scenery of the game.  It is 
  * connected to other rooms via exits.  For each existing exit, the room 
  * stores a reference to the neighboring room.
+ *
+ * A room also knows which players are in it, in every game played in the
+ * house, so that they can see and talk to each other. Players can come and
+ * go from any thread.
  * 
  * @author Gunamay Sachdev
  * @version 2020.11.24
@@ -18,9 +24,14 @@ import java.util.Iterator;
 
 public class Room 
 {
+    private int id;                     // a number that identifies this room.
+    private String name;                // what the room is called, for example "kitchen".
     private String description;
     private HashMap<String, Room> exits;        // stores exits of this room.
-    private Items items;        // stores items available in this room.
+    private Items items;        // stores the items this room starts with.
+    private volatile byte[] fixedDescription;   // the description and exits, encoded once.
+    private Set<Player> occupants;      // the players in this room.
+    private AtomicInteger occupantCount;    // the number of players in this room.
     
     /**
      * Create a room described "description". Initially, it has no exits.
@@ -29,9 +40,23 @@ public class Room
      */
     public Room(String description) 
     {
+        this(null, description);
+    }
+
+    /**
+     * Create a room called "name" and described "description". The name is
+     * what players call the room, for example "living room", as in "drop
+     * key in the living room". Initially, it has no exits.
+     */
+    public Room(String name, String description)
+    {
+        this.id = -1;   // given by the World the room is put in
+        this.name = name;
         this.description = description;
         exits = new HashMap<String, Room>();
         items = new Items();
+        occupants = ConcurrentHashMap.newKeySet();
+        occupantCount = new AtomicInteger();
     }
 
     /**
@@ -40,6 +65,45 @@ public class Room
     public void setExit(String direction, Room neighbor) 
     {
         exits.put(direction, neighbor);
+        fixedDescription = null;    // the exits changed, so build it again
+    }
+
+    /**
+     * Return the number that identifies this room. The rooms of a World are
+     * numbered from 0, in the order the world lists them.
+     * @return The room's id, or -1 if the room isn't in a world yet
+     */
+    public int getId()
+    {
+        return id;
+    }
+
+    /**
+     * Set the number that identifies this room. Only called by the World
+     * the room is put in.
+     * @param id The room's id
+     */
+    public void setId(int id)
+    {
+        this.id = id;
+    }
+
+    /**
+     * Return what the room is called, for example "living room".
+     * @return The name, or null if the room has none
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Return the directions this room has exits in, for example "north".
+     * @return The exit directions
+     */
+    public Set<String> getExitDirections()
+    {
+        return exits.keySet();
     }
 
     /**
@@ -59,7 +123,44 @@ public class Room
      */
     public String getLongDescription()
     {
-        return "You are " + description + ".\n" + getExitString() + "\nItems in the room: " + items.getLongDescription();
+        return getLongDescription(items);
+    }
+
+    /**
+     * Return a long description of this room holding the given items, in the form:
+     *     You are in the kitchen.
+     *     Exits: north west
+     *     Items in the room:   a kitchen knife
+     * @param items The items in the room.
+     */
+    public String getLongDescription(Items items)
+    {
+        return getFixedText() + items.getLongDescription();
+    }
+
+    /**
+     * Return the part of the long description that never changes, the
+     * description and the exits up to the items, already encoded. It is
+     * encoded the first time it is needed, so printing it again costs
+     * nothing but a copy.
+     * @return The encoded description.
+     */
+    public byte[] getEncodedDescription()
+    {
+        byte[] encoded = fixedDescription;
+        if(encoded == null) {
+            encoded = Response.encode(getFixedText());
+            fixedDescription = encoded;
+        }
+        return encoded;
+    }
+
+    /**
+     * Return the part of the long description that never changes.
+     */
+    private String getFixedText()
+    {
+        return "You are " + description + ".\n" + getExitString() + "\nItems in the room: ";
     }
    
     /**
@@ -68,11 +169,11 @@ public class Room
      */
     private String getExitString()
     {
-        String returnString = "Exits:";
+        StringBuilder returnString = new StringBuilder("Exits:");
         Set<String> keys = exits.keySet();
         for(Iterator<String> iter = keys.iterator(); iter.hasNext(); )
-            returnString += " " + iter.next();
-        return returnString;
+            returnString.append(" ").append(iter.next());
+        return returnString.toString();
     }
 
     /**
@@ -87,13 +188,80 @@ public class Room
     }
     
     /**
-     * Puts an item into this room.
+     * Puts an item into this room when the house is created. Items that are
+     * moved while the game is played are kept track of by RoomItems.
      * @param item The item put into the room.
      */
     public void addItem(Item item)
     {
         items.put(item.getName(), item);
     }
+
+    /**
+     * Puts a number of the same item into this room when the house is created.
+     * @param item The item put into the room.
+     * @param count How many of it to put in.
+     */
+    public void addItem(Item item, int count)
+    {
+        items.put(item.getName(), item, count);
+    }
+    
+    /**
+     * Returns the items this room starts with.
+     * @return The items in the room.
+     */
+    public Items getItems()
+    {
+        return items;
+    }
+    
+    /**
+     * A player has come into this room.
+     * @param player The player.
+     * @return true if the player wasn't already in the room.
+     */
+    public boolean addOccupant(Player player)
+    {
+        if(occupants.add(player)) {
+            occupantCount.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * A player has left this room.
+     * @param player The player.
+     * @return true if the player was in the room.
+     */
+    public boolean removeOccupant(Player player)
+    {
+        if(occupants.remove(player)) {
+            occupantCount.decrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Returns the players in this room. The set changes as players come and
+     * go, and must not be changed by the caller.
+     * @return The players in the room.
+     */
+    public Set<Player> getOccupants()
+    {
+        return occupants;
+    }
+
+    /**
+     * Returns the number of players in this room.
+     * @return The number of players.
+     */
+    public int getOccupantCount()
+    {
+        return occupantCount.get();
+    }
     
     /**
      * Returns the item if it is available, otherwise it returns null.
@@ -103,16 +271,6 @@ public class Room
     public Item getItem(String name)
     {
         return items.get(name);
-    }    
-    
-    /**
-     * Removes and returns the item if it is available, otherwise it returns null.
-     * @param name The item to be removed.
-     * @return The item if removed, null otherwise.
-     */
-    public Item removeItem(String name)
-    {
-        return items.remove(name);
     }
 }
 
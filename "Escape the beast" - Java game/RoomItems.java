@@ -0,0 +1,212 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+/**
+ * Class RoomItems - where the items are in one game.
+ *
+ * The rooms of the World are shared by every game, so a game can't take
+ * items out of them. Instead each game keeps its own RoomItems. A room's
+ * items are only copied into it the first time they change in this game,
+ * by a take, drop or eat. Every other room still uses the items it was
+ * created with. A new game therefore costs almost nothing, and a game only
+ * uses more memory for the rooms the player has changed.
+ *
+ * @author  Gunamay Sachdev
+ * @version 2020.11.24
+ */
+public class RoomItems
+{
+    // The items of the rooms that have changed in this game.
+    private HashMap<Room, Items> changed;
+    // The distances to the items, kept up to date as they move.
+    private ArrayList<DistanceField> distances;
+    // The number of items in the changed rooms, kept for estimateBytes.
+    private int changedItemCount;
+
+    /**
+     * Create the items for a new game, with every item where the world put it.
+     */
+    public RoomItems()
+    {
+        changed = new HashMap<Room, Items>();
+        distances = new ArrayList<DistanceField>();
+    }
+
+    /**
+     * Create the items for a new game, with the items of the world moved to
+     * random rooms. The same seed always places the items the same way.
+     * @param world The world the game is played in.
+     * @param seed The seed for the random placement.
+     */
+    public RoomItems(World world, long seed)
+    {
+        this();
+        Random random = new Random(seed);
+        List<Room> rooms = world.getRooms();
+        for(Room from : world.getItemRooms()) {
+            for(Iterator<Item> iter = from.getItems().iterator(); iter.hasNext(); ) {
+                Item item = iter.next();
+                int count = from.getItems().getCount(item.getName());
+                Room to = rooms.get(random.nextInt(rooms.size()));
+                if(to != from) {
+                    remove(from, item.getName(), count);
+                    add(to, item, count);
+                }
+            }
+        }
+    }
+
+    /**
+     * Return the items that are in the given room in this game.
+     * The result must not be changed.
+     * @param room The room.
+     * @return The items in the room.
+     */
+    public Items getItems(Room room)
+    {
+        Items items = changed.get(room);
+        if(items == null) {
+            items = room.getItems();
+        }
+        return items;
+    }
+
+    /**
+     * Returns the item if it is in the room, otherwise it returns null.
+     * @param room The room.
+     * @param name The name of the item.
+     * @return The named item, or null if it is not in the room.
+     */
+    public Item get(Room room, String name)
+    {
+        return getItems(room).get(name);
+    }
+
+    /**
+     * Returns how many of the named item are in the room.
+     * @param room The room.
+     * @param name The name of the item.
+     * @return The number of them, 0 if there are none.
+     */
+    public int getCount(Room room, String name)
+    {
+        return getItems(room).getCount(name);
+    }
+
+    /**
+     * Removes and returns one of the item if it is in the room, otherwise it returns null.
+     * @param room The room.
+     * @param name The name of the item.
+     * @return The item if removed, null otherwise.
+     */
+    public Item remove(Room room, String name)
+    {
+        return remove(room, name, 1);
+    }
+
+    /**
+     * Removes a number of the item from the room. Nothing is removed if the
+     * room holds fewer than that number.
+     * @param room The room.
+     * @param name The name of the item.
+     * @param count How many to remove.
+     * @return The item if removed, null otherwise.
+     */
+    public Item remove(Room room, String name, int count)
+    {
+        if(count < 1 || getCount(room, name) < count) {
+            return null;
+        }
+        Items items = getChangedItems(room);
+        int before = items.getNumberOfItems();
+        Item item = items.remove(name, count);
+        changedItemCount += items.getNumberOfItems() - before;
+        for(DistanceField field : distances) {
+            field.update(room);
+        }
+        return item;
+    }
+
+    /**
+     * Puts an item into the room.
+     * @param room The room.
+     * @param item The item put into the room.
+     */
+    public void add(Room room, Item item)
+    {
+        add(room, item, 1);
+    }
+
+    /**
+     * Puts a number of an item into the room.
+     * @param room The room.
+     * @param item The item put into the room.
+     * @param count How many to put in.
+     */
+    public void add(Room room, Item item, int count)
+    {
+        Items items = getChangedItems(room);
+        int before = items.getNumberOfItems();
+        items.put(item.getName(), item, count);
+        changedItemCount += items.getNumberOfItems() - before;
+        for(DistanceField field : distances) {
+            field.update(room);
+        }
+    }
+
+    /**
+     * Keep the given distances up to date as items are added and removed.
+     * @param field The distances to the items.
+     */
+    public void addDistanceField(DistanceField field)
+    {
+        distances.add(field);
+    }
+
+    /**
+     * Return a long description of the room with the items it holds in this game.
+     * @param room The room.
+     * @return The description.
+     */
+    public String getLongDescription(Room room)
+    {
+        return room.getLongDescription(getItems(room));
+    }
+
+    /**
+     * Return the number of rooms whose items have changed in this game.
+     * @return The number of changed rooms.
+     */
+    public int getChangedRoomCount()
+    {
+        return changed.size();
+    }
+
+    /**
+     * Return a rough estimate of the memory used by this game's copies of
+     * the rooms' items, in bytes. It is kept up to date as items move, so
+     * working it out doesn't look at the rooms.
+     * @return The estimated size in bytes.
+     */
+    public long estimateBytes()
+    {
+        return 32 + 48 + changed.size() * (40L + 80) + changedItemCount * 40L;
+    }
+
+    /**
+     * Return this game's own copy of the room's items, making the copy the
+     * first time it is needed.
+     */
+    private Items getChangedItems(Room room)
+    {
+        Items items = changed.get(room);
+        if(items == null) {
+            items = new Items(room.getItems());
+            changed.put(room, items);
+            changedItemCount += items.getNumberOfItems();
+        }
+        return items;
+    }
+}
@@ -0,0 +1,423 @@
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+/**
+ * Class SessionSlab - a compact store for players who are not playing at
+ * the moment.
+ *
+ * A Player is made of several objects: the player, its Items with their
+ * maps, its undo history and more. Keeping millions of idle players like
+ * that fills the heap and keeps the garbage collector busy. Instead, a
+ * player can be parked in the slab: its state is packed into a record of
+ * RECORD_BYTES bytes, in large buffers outside the heap, and the Player
+ * object can be thrown away. Unparking builds a new Player from the record.
+ *
+ * Each record holds:
+ *
+ *    0  int     1 if the slot is in use, 0 if it is free
+ *    4  int     id of the current room
+ *    8  int     id of the last room
+ *   12  int     moves used
+ *   16  int     limit of moves
+ *   20  int     number of different items carried
+ *   24  double  maximum weight
+ *   32  short, short   item id and count, for up to MAX_KINDS items
+ *
+ * The methods that take a slot read and change a parked player directly
+ * in its record, without building any objects.
+ *
+ * The records are kept in several buffers of CHUNK_SLOTS records each, as
+ * one buffer can't be bigger than 2GB. Instead of one lock for the whole
+ * slab, the slots are spread over LOCK_STRIPES locks, so players in
+ * different slots can usually be read and changed at the same time.
+ *
+ * Only what the game needs to carry on is kept. The undo history, the
+ * visited rooms, messages waiting in the inbox, effects of used items that
+ * only last a while and the name are not; the name must be given again
+ * when the player is unparked.
+ *
+ * @author  Gunamay Sachdev
+ * @version 2020.11.24
+ */
+public class SessionSlab
+{
+    // The size of one record, in bytes.
+    public static final int RECORD_BYTES = 64;
+    // The most different items a parked player can carry.
+    public static final int MAX_KINDS = 8;
+
+    // The number of records in each buffer: 1 << CHUNK_BITS.
+    private static final int CHUNK_BITS = 20;
+    private static final int CHUNK_SLOTS = 1 << CHUNK_BITS;
+    // The number of locks the slots are spread over.
+    private static final int LOCK_STRIPES = 64;
+
+    // Where each value is in a record.
+    private static final int USED = 0;
+    private static final int ROOM = 4;
+    private static final int LAST_ROOM = 8;
+    private static final int MOVES = 12;
+    private static final int MAX_MOVES = 16;
+    private static final int KINDS = 20;
+    private static final int MAX_WEIGHT = 24;
+    private static final int ITEMS = 32;
+
+    // The house the players are in.
+    private World world;
+    // The records, outside the heap, CHUNK_SLOTS records per buffer.
+    private ByteBuffer[] chunks;
+    // The locks of the slots; slot s uses locks[s % LOCK_STRIPES].
+    private Object[] locks;
+    // The free slots, used as a stack, guarded by freeLock.
+    private int[] freeSlots;
+    private int freeCount;
+    private Object freeLock;
+
+    /**
+     * Create a slab with room for the given number of players.
+     * @param world The house the players are in.
+     * @param capacity The most players that can be parked at once.
+     * @throws IllegalArgumentException if the capacity is negative.
+     */
+    public SessionSlab(World world, int capacity)
+    {
+        if(capacity < 0) {
+            throw new IllegalArgumentException("Bad capacity: " + capacity);
+        }
+        this.world = world;
+        chunks = new ByteBuffer[(int) (((long) capacity + CHUNK_SLOTS - 1) / CHUNK_SLOTS)];
+        for(int i = 0; i < chunks.length; i++) {
+            long slots = Math.min(CHUNK_SLOTS, capacity - (long) i * CHUNK_SLOTS);
+            chunks[i] = ByteBuffer.allocateDirect((int) (slots * RECORD_BYTES));
+        }
+        locks = new Object[LOCK_STRIPES];
+        for(int i = 0; i < LOCK_STRIPES; i++) {
+            locks[i] = new Object();
+        }
+        freeSlots = new int[capacity];
+        for(int i = 0; i < capacity; i++) {
+            freeSlots[i] = capacity - 1 - i;    // hand out slot 0 first
+        }
+        freeCount = capacity;
+        freeLock = new Object();
+    }
+
+    /**
+     * Park a player: pack its state into a free slot. The player leaves the
+     * house, so that it no longer takes up memory in its room, and should
+     * not be used afterwards.
+     * @param player The player to park.
+     * @return The slot the player is in, or -1 if the slab is full, or the
+     * player carries more than MAX_KINDS different items or an item that
+     * isn't in the world.
+     */
+    public int park(Player player)
+    {
+        Items items = player.getItems();
+        if(items.getNumberOfItems() > MAX_KINDS) {
+            return -1;
+        }
+        for(Iterator<Item> iter = items.iterator(); iter.hasNext(); ) {
+            Item item = iter.next();
+            // an item that isn't in a world has no id and couldn't be found again
+            if(item.getId() < 0 || item.getId() > Short.MAX_VALUE
+               || items.getCount(item.getName()) > Short.MAX_VALUE) {
+                return -1;
+            }
+        }
+
+        int slot;
+        synchronized(freeLock) {
+            if(freeCount == 0) {
+                return -1;
+            }
+            slot = freeSlots[--freeCount];
+        }
+        synchronized(lockFor(slot)) {
+            ByteBuffer records = chunks[slot >>> CHUNK_BITS];
+            int base = (slot & (CHUNK_SLOTS - 1)) * RECORD_BYTES;
+            records.putInt(base + ROOM, player.getCurrentRoom().getId());
+            records.putInt(base + LAST_ROOM, player.getLastRoom().getId());
+            records.putInt(base + MOVES, player.getMoves());
+            records.putInt(base + MAX_MOVES, player.getBaseMaxMoves());
+            records.putInt(base + KINDS, items.getNumberOfItems());
+            records.putDouble(base + MAX_WEIGHT, player.getBaseMaxWeight());
+            int at = base + ITEMS;
+            for(Iterator<Item> iter = items.iterator(); iter.hasNext(); ) {
+                Item item = iter.next();
+                records.putShort(at, (short) item.getId());
+                records.putShort(at + 2, (short) items.getCount(item.getName()));
+                at += 4;
+            }
+            records.putInt(base + USED, 1);
+        }
+        player.leaveHouse();
+        return slot;
+    }
+
+    /**
+     * Unpark a player: build it again from its slot, which becomes free.
+     * @param slot The slot the player is in.
+     * @param name The player's name.
+     * @param roomItems Where the items lying in the rooms are in the player's game.
+     * @param maxHistory The number of changes that can be undone from now on.
+     * @return The player, back in the house.
+     * @throws IllegalArgumentException if no player is parked in the slot.
+     */
+    public Player unpark(int slot, String name, RoomItems roomItems, int maxHistory)
+    {
+        Player player;
+        synchronized(lockFor(slot)) {
+            ByteBuffer records = getRecords(slot);
+            int base = getBase(slot);
+            player = new Player(name, world.getRoom(records.getInt(base + ROOM)), roomItems, maxHistory);
+            player.restore(world.getRoom(records.getInt(base + LAST_ROOM)), records.getInt(base + MOVES),
+                           records.getInt(base + MAX_MOVES), records.getDouble(base + MAX_WEIGHT));
+            int kinds = records.getInt(base + KINDS);
+            for(int at = base + ITEMS; at < base + ITEMS + kinds * 4; at += 4) {
+                player.carry(world.getItem(records.getShort(at)), records.getShort(at + 2));
+            }
+            records.putInt(base + USED, 0);
+        }
+        release(slot);
+        player.returnToHouse();
+        return player;
+    }
+
+    /**
+     * Forget the player in a slot, so that the slot can be used again.
+     * @param slot The slot.
+     * @throws IllegalArgumentException if no player is parked in the slot.
+     */
+    public void free(int slot)
+    {
+        synchronized(lockFor(slot)) {
+            getRecords(slot).putInt(getBase(slot) + USED, 0);
+        }
+        release(slot);
+    }
+
+    /**
+     * Return true if a player is parked in the slot.
+     * @param slot The slot.
+     * @return true if the slot is in use.
+     */
+    public boolean isUsed(int slot)
+    {
+        if(slot < 0 || slot >= freeSlots.length) {
+            return false;
+        }
+        synchronized(lockFor(slot)) {
+            return chunks[slot >>> CHUNK_BITS].getInt((slot & (CHUNK_SLOTS - 1)) * RECORD_BYTES + USED) != 0;
+        }
+    }
+
+    /**
+     * Move a parked player into a room, as Player.enterRoom does.
+     * @param slot The player's slot.
+     * @param room The room entered.
+     */
+    public void enterRoom(int slot, Room room)
+    {
+        synchronized(lockFor(slot)) {
+            ByteBuffer records = getRecords(slot);
+            int base = getBase(slot);
+            records.putInt(base + MOVES, records.getInt(base + MOVES) + 1);
+            records.putInt(base + LAST_ROOM, records.getInt(base + ROOM));
+            records.putInt(base + ROOM, room.getId());
+        }
+    }
+
+    /**
+     * Return the room a parked player is in.
+     * @param slot The player's slot.
+     * @return The current room.
+     */
+    public Room getCurrentRoom(int slot)
+    {
+        return world.getRoom(getInt(slot, ROOM));
+    }
+
+    /**
+     * Return the room a parked player was in before the current one.
+     * @param slot The player's slot.
+     * @return The last room.
+     */
+    public Room getLastRoom(int slot)
+    {
+        return world.getRoom(getInt(slot, LAST_ROOM));
+    }
+
+    /**
+     * Return the number of moves a parked player has used.
+     * @param slot The player's slot.
+     * @return The moves used.
+     */
+    public int getMoves(int slot)
+    {
+        return getInt(slot, MOVES);
+    }
+
+    /**
+     * Return the limit of moves of a parked player.
+     * @param slot The player's slot.
+     * @return The limit of moves.
+     */
+    public int getMaxMoves(int slot)
+    {
+        return getInt(slot, MAX_MOVES);
+    }
+
+    /**
+     * Return the maximum weight a parked player can hold.
+     * @param slot The player's slot.
+     * @return The weight limit.
+     */
+    public double getMaxWeight(int slot)
+    {
+        synchronized(lockFor(slot)) {
+            return getRecords(slot).getDouble(getBase(slot) + MAX_WEIGHT);
+        }
+    }
+
+    /**
+     * Return the weight a parked player can carry on top of what they carry now.
+     * @param slot The player's slot.
+     * @return The weight left.
+     */
+    public double getWeightLeft(int slot)
+    {
+        synchronized(lockFor(slot)) {
+            ByteBuffer records = getRecords(slot);
+            int base = getBase(slot);
+            double weight = 0;
+            int kinds = records.getInt(base + KINDS);
+            for(int at = base + ITEMS; at < base + ITEMS + kinds * 4; at += 4) {
+                weight += world.getItem(records.getShort(at)).getWeight() * records.getShort(at + 2);
+            }
+            return records.getDouble(base + MAX_WEIGHT) - weight;
+        }
+    }
+
+    /**
+     * Return how many of an item a parked player carries.
+     * @param slot The player's slot.
+     * @param item The item.
+     * @return The number carried, 0 if none.
+     */
+    public int getCount(int slot, Item item)
+    {
+        synchronized(lockFor(slot)) {
+            ByteBuffer records = getRecords(slot);
+            int base = getBase(slot);
+            int kinds = records.getInt(base + KINDS);
+            for(int at = base + ITEMS; at < base + ITEMS + kinds * 4; at += 4) {
+                if(records.getShort(at) == item.getId()) {
+                    return records.getShort(at + 2);
+                }
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Return the number of different items a parked player carries.
+     * @param slot The player's slot.
+     * @return The number of items.
+     */
+    public int howManyItems(int slot)
+    {
+        return getInt(slot, KINDS);
+    }
+
+    /**
+     * Return true if a parked player has used more moves than they have.
+     * @param slot The player's slot.
+     * @return true if the player is dead.
+     */
+    public boolean isDead(int slot)
+    {
+        synchronized(lockFor(slot)) {
+            ByteBuffer records = getRecords(slot);
+            int base = getBase(slot);
+            return records.getInt(base + MOVES) > records.getInt(base + MAX_MOVES);
+        }
+    }
+
+    /**
+     * Return the number of players parked.
+     * @return The number of used slots.
+     */
+    public int getSize()
+    {
+        synchronized(freeLock) {
+            return freeSlots.length - freeCount;
+        }
+    }
+
+    /**
+     * Return the most players that can be parked at once.
+     * @return The number of slots.
+     */
+    public int getCapacity()
+    {
+        return freeSlots.length;
+    }
+
+    /**
+     * Return the memory the slab uses, in bytes: the records outside the
+     * heap and the list of free slots on it.
+     * @return The size in bytes.
+     */
+    public long estimateBytes()
+    {
+        return 64 + chunks.length * 64L + LOCK_STRIPES * 16L + (long) freeSlots.length * (RECORD_BYTES + 4);
+    }
+
+    /**
+     * Return one int of the record of a slot.
+     */
+    private int getInt(int slot, int field)
+    {
+        synchronized(lockFor(slot)) {
+            return getRecords(slot).getInt(getBase(slot) + field);
+        }
+    }
+
+    /**
+     * Return the lock that guards a slot.
+     */
+    private Object lockFor(int slot)
+    {
+        return locks[(slot & Integer.MAX_VALUE) % LOCK_STRIPES];
+    }
+
+    /**
+     * Put a slot back on the list of free slots.
+     */
+    private void release(int slot)
+    {
+        synchronized(freeLock) {
+            freeSlots[freeCount++] = slot;
+        }
+    }
+
+    /**
+     * Return the buffer that holds the record of a slot.
+     * @throws IllegalArgumentException if no player is parked in the slot.
+     */
+    private ByteBuffer getRecords(int slot)
+    {
+        if(!isUsed(slot)) {
+            throw new IllegalArgumentException("No player is parked in slot " + slot);
+        }
+        return chunks[slot >>> CHUNK_BITS];
+    }
+
+    /**
+     * Return where the record of a slot starts in its buffer.
+     */
+    private int getBase(int slot)
+    {
+        return (slot & (CHUNK_SLOTS - 1)) * RECORD_BYTES;
+    }
+}
@@ -0,0 +1,194 @@
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+/**
+ * Class Spectator - someone watching a game without playing it.
+ *
+ * A spectator is sent the same output the player sees, after each command.
+ * The output is encoded once by the game and the very same bytes are
+ * handed to every spectator; nobody gets a copy of their own.
+ *
+ * Each spectator has a queue that holds a limited number of responses. If
+ * a spectator can't keep up and its queue is full, it is disconnected
+ * rather than making the player wait. The queues are written out by
+ * threads shared by all spectators: when responses arrive for a spectator,
+ * one task is handed to the shared threads to write everything waiting,
+ * and the thread is given back once the queue is empty. So only spectators
+ * that are being written to at the moment hold a thread, not everyone who
+ * is watching.
+ *
+ * Writing to a spectator can block, for example when the other end of a
+ * connection stops reading. A stalled spectator only holds its own thread:
+ * a new thread is started when all the others are busy. And no write may
+ * take longer than WRITE_TIMEOUT milliseconds; a watchdog closes the output
+ * of a spectator that is stuck longer, which ends the write and gives the
+ * thread back. One slow watcher therefore can't hold up the others.
+ *
+ * @author  Gunamay Sachdev
+ * @version 2020.11.24
+ */
+public class Spectator
+{
+    // The longest a write may take, in milliseconds.
+    private static final long WRITE_TIMEOUT = 5000;
+
+    // The threads that write to all spectators. Threads are started when
+    // all are busy and stop after being idle for a minute.
+    private static final ExecutorService WRITERS = Executors.newCachedThreadPool(daemon("spectator-writer"));
+    // The spectators being written to at the moment, checked by the watchdog.
+    private static final Set<Spectator> ACTIVE = ConcurrentHashMap.newKeySet();
+    // The thread that ends writes that take too long.
+    private static final ScheduledExecutorService WATCHDOG;
+    static {
+        WATCHDOG = Executors.newSingleThreadScheduledExecutor(daemon("spectator-watchdog"));
+        WATCHDOG.scheduleWithFixedDelay(Spectator::endStalledWrites, WRITE_TIMEOUT, WRITE_TIMEOUT / 5,
+                                        TimeUnit.MILLISECONDS);
+    }
+
+    // The spectator's name.
+    private String name;
+    // Where the output is written to.
+    private OutputStream out;
+    // The responses waiting to be written.
+    private ArrayBlockingQueue<byte[]> queue;
+    // True once the spectator has stopped watching.
+    private volatile boolean closed;
+    // True while a task to write the waiting responses is handed out.
+    private AtomicBoolean writing;
+    // The time the write going on started, from System.nanoTime, or 0.
+    private volatile long writeStarted;
+
+    /**
+     * Create a spectator.
+     * @param name The spectator's name.
+     * @param out Where the output is written to.
+     * @param capacity The number of responses that may wait to be written.
+     */
+    public Spectator(String name, OutputStream out, int capacity)
+    {
+        this.name = name;
+        this.out = out;
+        queue = new ArrayBlockingQueue<byte[]>(capacity);
+        writing = new AtomicBoolean();
+    }
+
+    /**
+     * Return the spectator's name.
+     * @return The name.
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Hand a response to the spectator without waiting. The bytes must not
+     * be changed afterwards, as they are shared with the player and the
+     * other spectators.
+     * @param response The encoded response.
+     * @return false if the spectator is too slow or has stopped watching,
+     * in which case it is closed and should be removed.
+     */
+    public boolean send(byte[] response)
+    {
+        if(closed || !queue.offer(response)) {
+            close();
+            return false;
+        }
+        if(writing.compareAndSet(false, true)) {
+            WRITERS.execute(this::writeResponses);
+        }
+        return true;
+    }
+
+    /**
+     * Stop watching the game.
+     */
+    public void close()
+    {
+        closed = true;
+        queue.clear();
+    }
+
+    /**
+     * Return true if the spectator has stopped watching.
+     * @return true if closed.
+     */
+    public boolean isClosed()
+    {
+        return closed;
+    }
+
+    /**
+     * Write the waiting responses, then give the thread back.
+     */
+    private void writeResponses()
+    {
+        ACTIVE.add(this);
+        try {
+            byte[] response = queue.poll();
+            while(response != null && !closed) {
+                writeStarted = System.nanoTime();
+                out.write(response);
+                response = queue.poll();
+            }
+            writeStarted = System.nanoTime();
+            out.flush();
+        }
+        catch(IOException exc) {
+            close();
+        }
+        finally {
+            writeStarted = 0;
+            ACTIVE.remove(this);
+        }
+        writing.set(false);
+        // a response may have come in just before the flag was cleared
+        if(!queue.isEmpty() && !closed && writing.compareAndSet(false, true)) {
+            WRITERS.execute(this::writeResponses);
+        }
+    }
+
+    /**
+     * Close the spectators whose write has taken longer than WRITE_TIMEOUT.
+     * Closing the output makes the blocked write fail, which gives its
+     * thread back.
+     */
+    private static void endStalledWrites()
+    {
+        long now = System.nanoTime();
+        for(Spectator spectator : ACTIVE) {
+            long started = spectator.writeStarted;
+            if(started != 0 && now - started > TimeUnit.MILLISECONDS.toNanos(WRITE_TIMEOUT)) {
+                spectator.close();
+                try {
+                    spectator.out.close();
+                }
+                catch(IOException exc) {
+                    // it is being dropped anyway
+                }
+            }
+        }
+    }
+
+    /**
+     * Return a maker of daemon threads with the given name, so that they
+     * don't keep the program running.
+     */
+    private static ThreadFactory daemon(String name)
+    {
+        return runnable -> {
+            Thread thread = new Thread(runnable, name);
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
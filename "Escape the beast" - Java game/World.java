@@ -0,0 +1,411 @@
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+/**
+ * Class World - the house the game takes place in.
+ *
+ * The world holds all the rooms, their exits and where the items start.
+ * It is built once and then shared by every game: nothing in it changes
+ * while the game is played. Where the items are in one particular game is
+ * kept separately, in that game's RoomItems.
+ * 
+ * @author  Gunamay Sachdev
+ * @version 2020.11.24
+ */
+public class World
+{
+    // The file with what happens when items are used, see ItemEffect for how
+    // the rules are written.
+    private static final String EFFECTS_FILE = "effects.txt";
+    // The rules used when there is no such file.
+    private static final String[] DEFAULT_EFFECTS = {
+        "apple eat weight 1 : The weight limit of the items you can carry has doubled!"
+            + "|You can now drop your magic apple and find the rest of the items!"
+            + "|Hurry! The beast is close to you!",
+    };
+
+    // The most weight classes, see getWeightClass.
+    public static final int MAX_WEIGHT_CLASSES = 4;
+
+    // The world shared by all games.
+    private static World defaultWorld;
+
+    // The name that identifies this world, for example in the leaderboard.
+    private String id;
+    // The room every game starts in.
+    private Room startRoom;
+    // All the rooms in the house.
+    private ArrayList<Room> rooms;
+    // The rooms that items start in.
+    private ArrayList<Room> itemRooms;
+    // The rooms, indexed by room id.
+    private Room[] roomsById;
+    // The rooms that have a name, by name.
+    private HashMap<String, Room> roomsByName;
+    // The items the house starts with, indexed by item id.
+    private Item[] itemsById;
+    // The weights that start each weight class, lightest first.
+    private double[] weightClasses;
+    // For each room id, the ids of the rooms with an exit into that room.
+    private int[][] entrances;
+    // The layout of the house, used to draw the map.
+    private WorldMap map;
+
+    /**
+     * Create the house: all the rooms, their exits and their items. What
+     * happens when items are used is read from the file "effects.txt" in
+     * the current directory if there is one.
+     */
+    public World()
+    {
+        this(new File(EFFECTS_FILE));
+    }
+
+    /**
+     * Create the house: all the rooms, their exits and their items, with
+     * the rules for using items read from a file.
+     * @param effects The file of rules, see ItemEffect. If it doesn't exist
+     * the rules the game comes with are used.
+     * @throws IllegalArgumentException if the file can't be read or a rule
+     * can't be understood.
+     */
+    public World(File effects)
+    {
+        id = "house";
+        rooms = new ArrayList<Room>();
+        startRoom = createRooms();
+        itemRooms = new ArrayList<Room>();
+        for(Room room : rooms) {
+            if(room.getItems().getNumberOfItems() > 0) {
+                itemRooms.add(room);
+            }
+        }
+        giveIds();
+        map = new WorldMap(startRoom, rooms.size());
+        findEntrances();
+        findItemsById();
+        loadEffects(effects);
+    }
+
+    /**
+     * Read the rules for using items from the file, or use the rules the
+     * game comes with if there is no file.
+     */
+    private void loadEffects(File effects)
+    {
+        if(!effects.exists()) {
+            for(String rule : DEFAULT_EFFECTS) {
+                ItemEffect.load(rule, this);
+            }
+            return;
+        }
+        try {
+            ItemEffect.loadFile(effects, this);
+        }
+        catch(IOException exc) {
+            throw new IllegalArgumentException("Can't read " + effects + ": " + exc.getMessage());
+        }
+    }
+
+    /**
+     * Return the world that is shared by all games, creating it the first
+     * time it is needed.
+     * @return The shared world.
+     */
+    public static synchronized World getDefault()
+    {
+        if(defaultWorld == null) {
+            defaultWorld = new World();
+        }
+        return defaultWorld;
+    }
+
+    /**
+     * Create all the rooms and link their exits together.
+     * 
+     * @return Returns the starting room
+     */
+    private Room createRooms()
+    {
+        Room entrance, hallway, bathroom, livingRoom, office, kitchen, diningRoom, garden, bedroom, vents;
+      
+        // create the rooms
+        entrance = new Room("entrance", "inside the entrance of the house you are trapped in");
+        hallway = new Room("hallway", "in the hallway of the house");
+        bathroom = new Room("bathroom", "in the bathroom");
+        livingRoom = new Room("living room", "in the living room");
+        office = new Room("office", "in the secret office");
+        kitchen = new Room("kitchen", "in the kitchen");
+        diningRoom = new Room("dining room", "in the dining room");
+        garden = new Room("garden", "in the garden");
+        bedroom = new Room("bedroom", "in the bedroom");
+        vents = new Room("vents", "in the vents");
+        
+        // put items in the room
+        diningRoom.addItem(new Item("bread", "a tasty piece of bread", 0.25));
+        vents.addItem(new Item("key", "a mysterious key", 0.1));
+        office.addItem(new Item("torch", "a functioning torch", 0.75));
+        bedroom.addItem(new Item("apple", "a magic apple", 0.01));
+        garden.addItem(new Item("knife", "A pocket knife", 0.5));
+        bathroom.addItem(new Item("string", "A piece of nylon string", 0.2));
+        livingRoom.addItem(new Item("pen", "A black pen",0.2)); 
+        kitchen.addItem(new Item("tablet","An electronic tablet", 5.0));
+        
+        // initialise room exits
+        entrance.setExit("north",hallway);
+        
+        hallway.setExit("north", diningRoom);
+        hallway.setExit("east", livingRoom);
+        hallway.setExit("south", entrance);
+        hallway.setExit("west", bathroom);
+        hallway.setExit("upstairs", bedroom);
+        
+        bathroom.setExit("east", hallway);
+        bathroom.setExit("north", kitchen);
+        
+        livingRoom.setExit("west", hallway);
+        livingRoom.setExit("east", office);
+        
+        office.setExit("west", livingRoom);
+        
+        kitchen.setExit("north", garden);
+        kitchen.setExit("east", diningRoom);
+        kitchen.setExit("south", bathroom);
+        
+        diningRoom.setExit("south", hallway);
+        diningRoom.setExit("west", kitchen);
+        
+        garden.setExit("south", kitchen);
+        
+        bedroom.setExit("downstairs", hallway);
+        bedroom.setExit("up", vents);
+        
+        vents.setExit("down", bedroom);
+
+        Collections.addAll(rooms, entrance, hallway, bathroom, livingRoom, office, kitchen,
+                           diningRoom, garden, bedroom, vents);
+        return entrance;  // start game at the entrance
+    }
+
+    /**
+     * Number the rooms and the items of this world from 0, so that arrays
+     * indexed by id are no bigger than the world, however many other
+     * worlds there are.
+     */
+    private void giveIds()
+    {
+        for(int i = 0; i < rooms.size(); i++) {
+            rooms.get(i).setId(i);
+        }
+        int nextItem = 0;
+        for(Room room : itemRooms) {
+            for(Iterator<Item> iter = room.getItems().iterator(); iter.hasNext(); ) {
+                iter.next().setId(nextItem++);
+            }
+        }
+    }
+
+    /**
+     * Index the rooms by id and by name, and work out which rooms lead into
+     * each room.
+     */
+    private void findEntrances()
+    {
+        int size = 0;
+        for(Room room : rooms) {
+            size = Math.max(size, room.getId() + 1);
+        }
+        roomsById = new Room[size];
+        roomsByName = new HashMap<String, Room>();
+        int[] count = new int[size];
+        for(Room room : rooms) {
+            roomsById[room.getId()] = room;
+            if(room.getName() != null) {
+                roomsByName.put(room.getName(), room);
+            }
+            for(String direction : room.getExitDirections()) {
+                count[room.getExit(direction).getId()]++;
+            }
+        }
+        entrances = new int[size][];
+        for(int id = 0; id < size; id++) {
+            entrances[id] = new int[count[id]];
+            count[id] = 0;
+        }
+        for(Room room : rooms) {
+            for(String direction : room.getExitDirections()) {
+                int to = room.getExit(direction).getId();
+                entrances[to][count[to]++] = room.getId();
+            }
+        }
+    }
+
+    /**
+     * Index the items the house starts with by id, and put their weights
+     * into weight classes.
+     */
+    private void findItemsById()
+    {
+        ArrayList<Item> items = new ArrayList<Item>();
+        int size = 0;
+        for(Room room : itemRooms) {
+            for(Iterator<Item> iter = room.getItems().iterator(); iter.hasNext(); ) {
+                Item item = iter.next();
+                items.add(item);
+                size = Math.max(size, item.getId() + 1);
+            }
+        }
+        itemsById = new Item[size];
+        for(Item item : items) {
+            itemsById[item.getId()] = item;
+        }
+        double[] weights = items.stream().mapToDouble(Item::getWeight).distinct().sorted().toArray();
+        if(weights.length <= MAX_WEIGHT_CLASSES) {
+            weightClasses = weights;
+        }
+        else {
+            // spread the classes evenly over the weights, from the lightest to the heaviest
+            weightClasses = new double[MAX_WEIGHT_CLASSES];
+            for(int i = 0; i < MAX_WEIGHT_CLASSES; i++) {
+                weightClasses[i] = weights[(int) ((long) i * (weights.length - 1) / (MAX_WEIGHT_CLASSES - 1))];
+            }
+        }
+    }
+
+    /**
+     * Return the name that identifies this world.
+     * @return The world's id.
+     */
+    public String getId()
+    {
+        return id;
+    }
+
+    /**
+     * Return the room every game starts in.
+     * @return The start room.
+     */
+    public Room getStartRoom()
+    {
+        return startRoom;
+    }
+
+    /**
+     * Return all the rooms in the house.
+     * @return The rooms.
+     */
+    public List<Room> getRooms()
+    {
+        return Collections.unmodifiableList(rooms);
+    }
+
+    /**
+     * Return the room with the given id.
+     * @param id The room's id.
+     * @return The room, or null if it is not in this world.
+     */
+    public Room getRoom(int id)
+    {
+        return id >= 0 && id < roomsById.length ? roomsById[id] : null;
+    }
+
+    /**
+     * Return the room with the given name.
+     * @param name The room's name, for example "living room".
+     * @return The room, or null if no room in this world has that name.
+     */
+    public Room getRoom(String name)
+    {
+        return roomsByName.get(name);
+    }
+
+    /**
+     * Return one more than the highest room id in this world.
+     * @return The size of an array indexed by room id.
+     */
+    public int getRoomIdLimit()
+    {
+        return roomsById.length;
+    }
+
+    /**
+     * Return the ids of the rooms that have an exit into the given room.
+     * @param id The room's id.
+     * @return The ids of the rooms leading into it.
+     */
+    public int[] getEntrances(int id)
+    {
+        return entrances[id];
+    }
+
+    /**
+     * Return the item with the given id.
+     * @param id The item's id.
+     * @return The item, or null if it is not in this world.
+     */
+    public Item getItem(int id)
+    {
+        return id >= 0 && id < itemsById.length ? itemsById[id] : null;
+    }
+
+    /**
+     * Put the weight a player can carry into one of at most
+     * MAX_WEIGHT_CLASSES classes. Each class starts at the weight of an
+     * item; the lightest class starts at the lightest item and the
+     * heaviest at the heaviest item. Someone who can carry the given weight
+     * can carry every item up to the weight returned, though perhaps some
+     * heavier ones too.
+     * @param weight The weight that can be carried.
+     * @return The weight the class starts at, or -1 if every item is heavier.
+     */
+    public double getWeightClass(double weight)
+    {
+        int i = Arrays.binarySearch(weightClasses, weight);
+        if(i < 0) {
+            i = -i - 2;     // the lighter neighbour of where it would go
+        }
+        return i < 0 ? -1 : weightClasses[i];
+    }
+
+    /**
+     * Return the rooms that items start in.
+     * @return The rooms with items.
+     */
+    public List<Room> getItemRooms()
+    {
+        return Collections.unmodifiableList(itemRooms);
+    }
+
+    /**
+     * Return all the items with the given name, in the rooms they start in.
+     * @param name The name of the items.
+     * @return The items, which may be none.
+     */
+    public List<Item> findItems(String name)
+    {
+        ArrayList<Item> found = new ArrayList<Item>();
+        for(Room room : itemRooms) {
+            for(Iterator<Item> iter = room.getItems().iterator(); iter.hasNext(); ) {
+                Item item = iter.next();
+                if(item.getName().equals(name)) {
+                    found.add(item);
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Return the layout of the house.
+     * @return The map.
+     */
+    public WorldMap getMap()
+    {
+        return map;
+    }
+}
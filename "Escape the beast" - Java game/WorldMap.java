@@ -0,0 +1,335 @@
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.BitSet;
+/**
+ * Class WorldMap - the layout of the house, used to draw the rooms a player
+ * has explored.
+ *
+ * The layout is worked out once, when the map is created, by walking the
+ * exits from the first room and giving every room a position: north, south,
+ * east and west move along a floor and up and down move to another floor.
+ * The positions are kept in arrays of numbers, and a small hash table of
+ * numbers finds the room at a position, so the layout costs a few dozen
+ * bytes per room.
+ *
+ * Drawing the map only looks at the rooms the player has visited and their
+ * neighbours, and only draws the part of the house around the player: at
+ * most VIEW_WIDTH by VIEW_HEIGHT rooms on each of the floors close by. The
+ * time and the size of the map therefore don't grow with how much of the
+ * house has been explored.
+ *
+ * A map is drawn one floor at a time, for example:
+ *
+ *         [ ]
+ *          |
+ *     [ ]-[*]-[?]
+ *
+ * where [*] is the player's room, [ ] a visited room and [?] a room the
+ * player knows an exit to but has not been in yet.
+ *
+ * @author  Gunamay Sachdev
+ * @version 2020.11.24
+ */
+public class WorldMap
+{
+    // The most rooms drawn across and down, and floors above and below the player.
+    private static final int VIEW_WIDTH = 15;
+    private static final int VIEW_HEIGHT = 9;
+    private static final int VIEW_FLOORS = 1;
+
+    // The position of each room, indexed by room id.
+    private int[] x;
+    private int[] y;
+    private int[] floor;
+    // The rooms, indexed by room id. null if the room has no position.
+    private Room[] rooms;
+    // The room at each position: a hash table of packed positions and the
+    // room ids that go with them, where an id of -1 is an empty slot.
+    private long[] keys;
+    private int[] ids;
+
+    /**
+     * Work out the layout of all rooms that can be reached from the given room.
+     * @param start The room the layout starts from.
+     * @param size One more than the highest room id.
+     */
+    public WorldMap(Room start, int size)
+    {
+        x = new int[size];
+        y = new int[size];
+        floor = new int[size];
+        rooms = new Room[size];
+        int slots = Integer.highestOneBit(Math.max(size, 1) * 2 - 1) * 2;  // at most half full
+        keys = new long[slots];
+        ids = new int[slots];
+        Arrays.fill(ids, -1);
+
+        place(start, 0, 0, 0);
+        ArrayDeque<Room> toVisit = new ArrayDeque<Room>();
+        toVisit.add(start);
+        while(!toVisit.isEmpty()) {
+            Room room = toVisit.poll();
+            int id = room.getId();
+            for(String direction : room.getExitDirections()) {
+                Room next = room.getExit(direction);
+                int[] step = getStep(direction);
+                if(next.getId() < size && rooms[next.getId()] == null && step != null
+                   && place(next, x[id] + step[0], y[id] + step[1], floor[id] + step[2])) {
+                    toVisit.add(next);
+                }
+            }
+        }
+    }
+
+    /**
+     * Draw the rooms around the player that they have visited, and the rooms
+     * their exits lead to, one floor at a time.
+     * @param visited The ids of the rooms the player has visited.
+     * @param current The room the player is in.
+     * @return The map.
+     */
+    public String render(BitSet visited, Room current)
+    {
+        // The view is centred on the player, or on the first room they
+        // visited if the player's room has no place on the map.
+        int centre = current.getId();
+        if(centre < 0 || centre >= rooms.length || rooms[centre] == null) {
+            centre = visited.nextSetBit(0);
+            while(centre >= 0 && centre < rooms.length && rooms[centre] == null) {
+                centre = visited.nextSetBit(centre + 1);
+            }
+            if(centre < 0 || centre >= rooms.length) {
+                return "You haven't explored anything yet.";
+            }
+        }
+        int left = x[centre] - VIEW_WIDTH / 2;
+        int top = y[centre] - VIEW_HEIGHT / 2;
+
+        // Find the rooms in view to draw: the visited ones and their neighbours.
+        int[] shown = new int[16];
+        int count = 0;
+        boolean clipped = false;
+        for(int id = visited.nextSetBit(0); id >= 0 && id < rooms.length; id = visited.nextSetBit(id + 1)) {
+            if(rooms[id] == null) {
+                continue;
+            }
+            for(String direction : rooms[id].getExitDirections()) {
+                int next = rooms[id].getExit(direction).getId();
+                if(next < rooms.length && rooms[next] != null) {
+                    if(!isInView(next, left, top, floor[centre])) {
+                        clipped = true;
+                    }
+                    else {
+                        if(count == shown.length) {
+                            shown = Arrays.copyOf(shown, count * 2);
+                        }
+                        shown[count++] = next;
+                    }
+                }
+            }
+            if(!isInView(id, left, top, floor[centre])) {
+                clipped = true;
+                continue;
+            }
+            if(count == shown.length) {
+                shown = Arrays.copyOf(shown, count * 2);
+            }
+            shown[count++] = id;
+        }
+
+        // Keep each room once.
+        Arrays.sort(shown, 0, count);
+        int inView = 0;
+        for(int i = 0; i < count; i++) {
+            if(inView == 0 || shown[inView - 1] != shown[i]) {
+                shown[inView++] = shown[i];
+            }
+        }
+        if(inView == 0) {
+            return "You haven't explored anything yet.";
+        }
+
+        // All floors use the same columns, so rooms line up with the rooms above them.
+        int minX = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        for(int i = 0; i < inView; i++) {
+            minX = Math.min(minX, x[shown[i]]);
+            maxX = Math.max(maxX, x[shown[i]]);
+        }
+
+        StringBuilder map = new StringBuilder();
+        for(int level = floor[centre] + VIEW_FLOORS; level >= floor[centre] - VIEW_FLOORS; level--) {
+            renderFloor(map, level, minX, maxX, shown, inView, visited, current);
+        }
+        if(clipped) {
+            map.append("(Only the rooms near you are shown.)\n");
+        }
+        return map.toString();
+    }
+
+    /**
+     * Return true if the room is close enough to the middle of the view to be drawn.
+     */
+    private boolean isInView(int id, int left, int top, int level)
+    {
+        return x[id] >= left && x[id] < left + VIEW_WIDTH && y[id] >= top && y[id] < top + VIEW_HEIGHT
+            && Math.abs(floor[id] - level) <= VIEW_FLOORS;
+    }
+
+    /**
+     * Draw one floor of the map, from the rooms in view.
+     */
+    private void renderFloor(StringBuilder map, int level, int minX, int maxX,
+                             int[] shown, int count, BitSet visited, Room current)
+    {
+        int minY = Integer.MAX_VALUE;
+        int maxY = Integer.MIN_VALUE;
+        for(int i = 0; i < count; i++) {
+            int id = shown[i];
+            if(floor[id] == level) {
+                minY = Math.min(minY, y[id]);
+                maxY = Math.max(maxY, y[id]);
+            }
+        }
+        if(minY > maxY) {
+            return;     // nothing known on this floor
+        }
+
+        // Two lines for each row: the rooms, and the paths to the row below.
+        int width = (maxX - minX + 1) * 4;
+        char[][] lines = new char[(maxY - minY) * 2 + 1][width];
+        for(char[] line : lines) {
+            Arrays.fill(line, ' ');
+        }
+        for(int i = 0; i < count; i++) {
+            int id = shown[i];
+            if(floor[id] != level) {
+                continue;
+            }
+            char[] line = lines[(y[id] - minY) * 2];
+            int at = (x[id] - minX) * 4;
+            line[at] = '[';
+            line[at + 1] = rooms[id] == current ? '*' : visited.get(id) ? ' ' : '?';
+            line[at + 2] = ']';
+            if(x[id] < maxX && isKnownPath(id, getRoomAt(x[id] + 1, y[id], level), visited)) {
+                line[at + 3] = '-';
+            }
+            if(y[id] < maxY && isKnownPath(id, getRoomAt(x[id], y[id] + 1, level), visited)) {
+                lines[(y[id] - minY) * 2 + 1][at + 1] = '|';
+            }
+        }
+
+        map.append(level == 0 ? "Ground floor:" : "Floor " + level + ":").append("\n");
+        for(char[] line : lines) {
+            map.append(trimEnd(line)).append("\n");
+        }
+    }
+
+    /**
+     * Return true if the player knows an exit between the two rooms, that is
+     * one of them was visited and has an exit to the other.
+     */
+    private boolean isKnownPath(int from, int to, BitSet visited)
+    {
+        if(to < 0) {
+            return false;
+        }
+        return (visited.get(from) && leadsTo(rooms[from], to))
+            || (visited.get(to) && leadsTo(rooms[to], from));
+    }
+
+    /**
+     * Return true if the room has an exit to the room with the given id.
+     */
+    private boolean leadsTo(Room room, int id)
+    {
+        for(String direction : room.getExitDirections()) {
+            if(room.getExit(direction).getId() == id) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Give a room a position, unless another room is already there.
+     * @return true if the room was placed.
+     */
+    private boolean place(Room room, int roomX, int roomY, int roomFloor)
+    {
+        long key = getKey(roomX, roomY, roomFloor);
+        int slot = findSlot(key);
+        if(ids[slot] >= 0) {
+            return false;
+        }
+        int id = room.getId();
+        x[id] = roomX;
+        y[id] = roomY;
+        floor[id] = roomFloor;
+        rooms[id] = room;
+        keys[slot] = key;
+        ids[slot] = id;
+        return true;
+    }
+
+    /**
+     * Return the id of the room at the given position, or -1 if there is none.
+     */
+    private int getRoomAt(int roomX, int roomY, int roomFloor)
+    {
+        return ids[findSlot(getKey(roomX, roomY, roomFloor))];
+    }
+
+    /**
+     * Return the slot of the hash table that holds the position, or the
+     * empty slot where it would go.
+     */
+    private int findSlot(long key)
+    {
+        int mask = keys.length - 1;
+        int slot = (int) ((key * 0x9E3779B97F4A7C15L) >>> 40) & mask;
+        while(ids[slot] >= 0 && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    /**
+     * Pack a position into one number.
+     */
+    private static long getKey(int roomX, int roomY, int roomFloor)
+    {
+        return ((long) roomFloor << 42) ^ ((long) (roomY & 0x1FFFFF) << 21) ^ (roomX & 0x1FFFFF);
+    }
+
+    /**
+     * Return how a direction changes the position as {x, y, floor}, or null
+     * if the direction can't be placed on the map.
+     */
+    private static int[] getStep(String direction)
+    {
+        switch(direction) {
+            case "north":       return new int[] {0, -1, 0};
+            case "south":       return new int[] {0, 1, 0};
+            case "east":        return new int[] {1, 0, 0};
+            case "west":        return new int[] {-1, 0, 0};
+            case "up":
+            case "upstairs":    return new int[] {0, 0, 1};
+            case "down":
+            case "downstairs":  return new int[] {0, 0, -1};
+            default:            return null;
+        }
+    }
+
+    /**
+     * Return the characters as a string without the spaces at the end.
+     */
+    private static String trimEnd(char[] line)
+    {
+        int end = line.length;
+        while(end > 0 && line[end - 1] == ' ') {
+            end--;
+        }
+        return new String(line, 0, end);
+    }
+}
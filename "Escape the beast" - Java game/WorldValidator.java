@@ -0,0 +1,312 @@
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+/**
+ * Class WorldValidator - checks that a house is wired up correctly.
+ *
+ * The exits of a house are set by hand, so it is easy to forget the way
+ * back or to leave a room that nobody can get to. The validator reports:
+ *
+ *  - exits without a way back, for example a room with an exit north whose
+ *    neighbour has no exit south back into it,
+ *  - rooms that can't be reached from the start room, and the items in them,
+ *  - groups of rooms that the player can walk into but never leave again.
+ *
+ * To find the last kind, the rooms are split into strongly connected
+ * components: groups in which every room can be reached from every other.
+ * A group that no exit leads out of traps the player. Only groups the
+ * player can get into are reported as traps; the others are already
+ * reported as unreachable. Every check looks at each room and exit a fixed
+ * number of times, so even very large houses are checked quickly.
+ *
+ * The exits of different rooms are checked in parallel.
+ *
+ * @author  Gunamay Sachdev
+ * @version 2020.11.24
+ */
+public class WorldValidator
+{
+    // Directions and the direction that leads back.
+    private static final String[][] OPPOSITES = {
+        {"north", "south"}, {"east", "west"}, {"up", "down"}, {"upstairs", "downstairs"}
+    };
+
+    // The house being checked.
+    private World world;
+
+    /**
+     * Create a validator for the given house.
+     * @param world The house to check.
+     */
+    public WorldValidator(World world)
+    {
+        this.world = world;
+    }
+
+    /**
+     * Check the shared house and print what is wrong with it.
+     */
+    public static void main(String[] args)
+    {
+        new WorldValidator(World.getDefault()).printReport();
+    }
+
+    /**
+     * Print what is wrong with the house, or that nothing is.
+     */
+    public void printReport()
+    {
+        List<String> problems = validate();
+        if(problems.isEmpty()) {
+            System.out.println("No problems found in " + world.getId() + ".");
+        }
+        for(String problem : problems) {
+            System.out.println(problem);
+        }
+    }
+
+    /**
+     * Check the house.
+     * @return A description of every problem found, or an empty list.
+     */
+    public List<String> validate()
+    {
+        ArrayList<String> problems = new ArrayList<String>();
+        BitSet reached = findReachable();
+        problems.addAll(checkExits());
+        problems.addAll(checkReachable(reached));
+        problems.addAll(checkTraps(reached));
+        return problems;
+    }
+
+    /**
+     * Find the exits that have no way back.
+     */
+    private List<String> checkExits()
+    {
+        return world.getRooms().parallelStream()
+            .flatMap(room -> room.getExitDirections().stream()
+                .filter(direction -> !hasWayBack(room, direction))
+                .map(direction -> "No way back: going " + direction + " from \""
+                     + room.getShortDescription() + "\" to \""
+                     + room.getExit(direction).getShortDescription() + "\""))
+            .collect(Collectors.toList());
+    }
+
+    /**
+     * Return true if the exit in the given direction has a way back. If the
+     * direction has a known opposite, the way back must be in that direction.
+     */
+    private static boolean hasWayBack(Room room, String direction)
+    {
+        Room neighbor = room.getExit(direction);
+        String opposite = getOpposite(direction);
+        if(opposite != null) {
+            return neighbor.getExit(opposite) == room;
+        }
+        for(String back : neighbor.getExitDirections()) {
+            if(neighbor.getExit(back) == room) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return the direction that leads back, or null if it isn't known.
+     */
+    private static String getOpposite(String direction)
+    {
+        for(String[] pair : OPPOSITES) {
+            if(pair[0].equals(direction))
+                return pair[1];
+            if(pair[1].equals(direction))
+                return pair[0];
+        }
+        return null;
+    }
+
+    /**
+     * Return the ids of the rooms that can be reached from the start room.
+     */
+    private BitSet findReachable()
+    {
+        BitSet reached = new BitSet(world.getRoomIdLimit());
+        ArrayDeque<Room> toVisit = new ArrayDeque<Room>();
+        toVisit.add(world.getStartRoom());
+        reached.set(world.getStartRoom().getId());
+        while(!toVisit.isEmpty()) {
+            Room room = toVisit.poll();
+            for(String direction : room.getExitDirections()) {
+                Room next = room.getExit(direction);
+                if(!reached.get(next.getId())) {
+                    reached.set(next.getId());
+                    toVisit.add(next);
+                }
+            }
+        }
+        return reached;
+    }
+
+    /**
+     * Find the rooms, and the items in them, that can't be reached from the start room.
+     */
+    private List<String> checkReachable(BitSet reached)
+    {
+        ArrayList<String> problems = new ArrayList<String>();
+        for(Room room : world.getRooms()) {
+            if(!reached.get(room.getId())) {
+                problems.add("Unreachable room: \"" + room.getShortDescription() + "\"");
+                for(Iterator<Item> iter = room.getItems().iterator(); iter.hasNext(); ) {
+                    problems.add("Unreachable item: " + iter.next().getName()
+                                 + " in \"" + room.getShortDescription() + "\"");
+                }
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Find the groups of rooms that the player can get into but can't leave.
+     */
+    private List<String> checkTraps(BitSet reached)
+    {
+        int[] component = findComponents();
+        int count = 0;
+        for(int c : component) {
+            count = Math.max(count, c + 1);
+        }
+
+        // A group is a trap if no exit leads out of it.
+        boolean[] hasWayOut = new boolean[count];
+        for(Room room : world.getRooms()) {
+            for(String direction : room.getExitDirections()) {
+                if(component[room.getExit(direction).getId()] != component[room.getId()]) {
+                    hasWayOut[component[room.getId()]] = true;
+                }
+            }
+        }
+
+        // Group the room ids by component, in one pass: the rooms of
+        // component c are members[first[c]] up to members[first[c + 1]].
+        int[] first = new int[count + 1];
+        for(Room room : world.getRooms()) {
+            first[component[room.getId()] + 1]++;
+        }
+        for(int c = 0; c < count; c++) {
+            first[c + 1] += first[c];
+        }
+        int[] members = new int[first[count]];
+        int[] filled = Arrays.copyOf(first, count);
+        for(Room room : world.getRooms()) {
+            members[filled[component[room.getId()]]++] = room.getId();
+        }
+
+        ArrayList<String> problems = new ArrayList<String>();
+        int start = component[world.getStartRoom().getId()];
+        for(int c = 0; c < count; c++) {
+            // every room of a group is reached if one is, so look at the first
+            if(!hasWayOut[c] && c != start && first[c] < first[c + 1] && reached.get(members[first[c]])) {
+                StringBuilder rooms = new StringBuilder();
+                for(int i = first[c]; i < first[c + 1]; i++) {
+                    rooms.append(i == first[c] ? "" : ", ")
+                         .append("\"").append(world.getRoom(members[i]).getShortDescription()).append("\"");
+                }
+                problems.add("Trap, no way out once inside: " + rooms);
+            }
+        }
+        return problems;
+    }
+
+    /**
+     * Split the rooms into strongly connected components using Tarjan's
+     * algorithm, without recursion so that long corridors can't overflow
+     * the stack.
+     * @return The number of the component of each room, indexed by room id.
+     */
+    private int[] findComponents()
+    {
+        int size = world.getRoomIdLimit();
+        int[] component = new int[size];
+        int[] index = new int[size];
+        int[] lowLink = new int[size];
+        boolean[] onStack = new boolean[size];
+        Arrays.fill(index, -1);
+        Arrays.fill(component, -1);
+        int[] stack = new int[size];
+        int stackSize = 0;
+        int nextIndex = 0;
+        int nextComponent = 0;
+
+        // The rooms being explored, with how many of their exits were looked at.
+        int[] path = new int[size];
+        int[] exitsDone = new int[size];
+        int[][] exits = new int[size][];
+
+        for(Room root : world.getRooms()) {
+            if(index[root.getId()] >= 0) {
+                continue;
+            }
+            int depth = 0;
+            path[0] = root.getId();
+            exitsDone[0] = 0;
+            while(depth >= 0) {
+                int id = path[depth];
+                if(exitsDone[depth] == 0 && index[id] < 0) {
+                    index[id] = nextIndex;
+                    lowLink[id] = nextIndex;
+                    nextIndex++;
+                    stack[stackSize++] = id;
+                    onStack[id] = true;
+                    exits[id] = getExitIds(world.getRoom(id));
+                }
+                if(exitsDone[depth] < exits[id].length) {
+                    int next = exits[id][exitsDone[depth]++];
+                    if(index[next] < 0) {
+                        depth++;
+                        path[depth] = next;
+                        exitsDone[depth] = 0;
+                    }
+                    else if(onStack[next]) {
+                        lowLink[id] = Math.min(lowLink[id], index[next]);
+                    }
+                    continue;
+                }
+                // all exits looked at: close the component if this room starts one
+                if(lowLink[id] == index[id]) {
+                    int member;
+                    do {
+                        member = stack[--stackSize];
+                        onStack[member] = false;
+                        component[member] = nextComponent;
+                    } while(member != id);
+                    nextComponent++;
+                }
+                exits[id] = null;
+                depth--;
+                if(depth >= 0) {
+                    int parent = path[depth];
+                    lowLink[parent] = Math.min(lowLink[parent], lowLink[id]);
+                }
+            }
+        }
+        return component;
+    }
+
+    /**
+     * Return the ids of the rooms the exits of a room lead to.
+     */
+    private static int[] getExitIds(Room room)
+    {
+        int[] ids = new int[room.getExitDirections().size()];
+        int i = 0;
+        for(String direction : room.getExitDirections()) {
+            ids[i++] = room.getExit(direction).getId();
+        }
+        return ids;
+    }
+}